@@ -5,7 +5,7 @@ import javax.swing.*;
 public class Game {
 
     public static void main(String[] args) {
-        Runnable game = new org.cis120.minesweeper.RunMinesweeper();
+        Runnable game = new RunMinesweeper(args);
         SwingUtilities.invokeLater(game);
     }
 }
@@ -0,0 +1,261 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * AnalysisReport aggregates the BoardAnalysis of many boards. It is used to
+ * tune board presets such as the Easy, Intermediate and Hard ones offered by
+ * RunMinesweeper.
+ * 
+ * Reports are built in parallel: every worker keeps its own partial report,
+ * analyzes one board at a time and drops it, and the partial reports are
+ * combined at the end. Boards from an arbitrary stream are taken from it in
+ * chunks of CHUNK_PER_CORE boards per core, and a chunk is only taken once the
+ * previous one has been analyzed, so memory use stays at one chunk of boards
+ * no matter how many boards are analyzed or where they come from.
+ */
+public class AnalysisReport {
+
+    // Number of boards per core taken from a stream at once
+    public static final int CHUNK_PER_CORE = 16;
+
+    private long boards;
+    private long threeBV;
+    private int minThreeBV = Integer.MAX_VALUE;
+    private int maxThreeBV = Integer.MIN_VALUE;
+    private long openings;
+    private long islands;
+
+    // numbers[i] is how many safe squares, over all boards, show the number i
+    private long[] numbers = new long[9];
+
+    // density[k] is how many tiles, over all boards, hold exactly k mines
+    private long[] density =
+            new long[BoardAnalysis.DENSITY_WINDOW * BoardAnalysis.DENSITY_WINDOW + 1];
+
+    /**
+     * analyze builds the report of every board in the given stream. The stream
+     * may come from any source, even one of unknown size such as boards read
+     * from files. It is read one chunk at a time on the calling thread, and
+     * each chunk is analyzed in parallel.
+     * 
+     * @param games boards to analyze
+     * @return the aggregated report
+     */
+    public static AnalysisReport analyze(Stream<Minesweeper> games) {
+        // a parallel stream of unknown size would buffer ever larger batches of boards
+        Iterator<Minesweeper> source = games.sequential().iterator();
+        Minesweeper[] chunk =
+                new Minesweeper[CHUNK_PER_CORE * Runtime.getRuntime().availableProcessors()];
+        AnalysisReport report = new AnalysisReport();
+        while (source.hasNext()) {
+            int n = 0;
+            while (n < chunk.length && source.hasNext()) {
+                chunk[n] = source.next();
+                n++;
+            }
+            report.combine(analyzeAll(Arrays.stream(chunk, 0, n)));
+            Arrays.fill(chunk, null);
+        }
+        return report;
+    }
+
+    /**
+     * analyzeAll is a helper function of analyze and generate that builds the
+     * report of a stream whose boards can be split between workers without
+     * buffering them, such as an array or a range of seeds.
+     */
+    private static AnalysisReport analyzeAll(Stream<Minesweeper> games) {
+        return games.parallel().map(BoardAnalysis::new)
+                .collect(AnalysisReport::new, AnalysisReport::add, AnalysisReport::combine);
+    }
+
+    /**
+     * generate builds the report of count boards of the given size. Board i is
+     * generated from the seed seed + i, so a report can always be reproduced.
+     * 
+     * @param c     number of columns of each board
+     * @param r     number of rows of each board
+     * @param m     number of mines of each board
+     * @param seed  seed of the first board
+     * @param count number of boards to analyze
+     * @return the aggregated report
+     */
+    public static AnalysisReport generate(int c, int r, int m, long seed, long count) {
+        // a range is split evenly, so each board is generated by the worker analyzing it
+        return analyzeAll(
+                LongStream.range(0, count).mapToObj(i -> new Minesweeper(c, r, m, seed + i))
+        );
+    }
+
+    /**
+     * add includes one more board in this report.
+     */
+    public void add(BoardAnalysis a) {
+        boards++;
+        threeBV += a.threeBV();
+        minThreeBV = Math.min(minThreeBV, a.threeBV());
+        maxThreeBV = Math.max(maxThreeBV, a.threeBV());
+        openings += a.openings();
+        islands += a.islands();
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] += a.numbers(i);
+        }
+        for (int k = 0; k < density.length; k++) {
+            density[k] += a.density(k);
+        }
+    }
+
+    /**
+     * combine includes every board of another report in this report.
+     */
+    public void combine(AnalysisReport other) {
+        boards += other.boards;
+        threeBV += other.threeBV;
+        minThreeBV = Math.min(minThreeBV, other.minThreeBV);
+        maxThreeBV = Math.max(maxThreeBV, other.maxThreeBV);
+        openings += other.openings;
+        islands += other.islands;
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] += other.numbers[i];
+        }
+        for (int k = 0; k < density.length; k++) {
+            density[k] += other.density[k];
+        }
+    }
+
+    /**
+     * getter for the number of boards in the report
+     * 
+     * @return long that represents the number of analyzed boards
+     */
+    public long boards() {
+        return boards;
+    }
+
+    /**
+     * getter for the average 3BV of the boards in the report
+     * 
+     * @return double that represents the average 3BV, or 0 without boards
+     */
+    public double averageThreeBV() {
+        return average(threeBV);
+    }
+
+    /**
+     * getter for the smallest 3BV of the boards in the report
+     * 
+     * @return int that represents the smallest 3BV, or 0 without boards
+     */
+    public int minThreeBV() {
+        if (boards == 0) {
+            return 0;
+        }
+        return minThreeBV;
+    }
+
+    /**
+     * getter for the largest 3BV of the boards in the report
+     * 
+     * @return int that represents the largest 3BV, or 0 without boards
+     */
+    public int maxThreeBV() {
+        if (boards == 0) {
+            return 0;
+        }
+        return maxThreeBV;
+    }
+
+    /**
+     * getter for the average number of openings of the boards in the report
+     * 
+     * @return double that represents the average number of openings
+     */
+    public double averageOpenings() {
+        return average(openings);
+    }
+
+    /**
+     * getter for the average number of islands of the boards in the report
+     * 
+     * @return double that represents the average number of islands
+     */
+    public double averageIslands() {
+        return average(islands);
+    }
+
+    /**
+     * getter for how many safe squares, over all boards, show the given number
+     * 
+     * @param n number of adjacent mines, from 0 to 8
+     * @return long that represents how many safe squares show n
+     */
+    public long numbers(int n) {
+        return numbers[n];
+    }
+
+    /**
+     * getter for how many tiles, over all boards, hold the given number of
+     * mines; see BoardAnalysis for how boards are cut into tiles
+     * 
+     * @param k number of mines, from 0 to the area of a tile
+     * @return long that represents how many tiles hold k mines
+     */
+    public long density(int k) {
+        return density[k];
+    }
+
+    private double average(long total) {
+        if (boards == 0) {
+            return 0;
+        }
+        return (double) total / boards;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append("Boards: ").append(boards).append('\n');
+        s.append(String.format("3BV: average %.2f, min %d, max %d%n", averageThreeBV(),
+                minThreeBV(), maxThreeBV()));
+        s.append(String.format("Openings: average %.2f%n", averageOpenings()));
+        s.append(String.format("Islands: average %.2f%n", averageIslands()));
+        s.append("Squares by number:");
+        for (int i = 0; i < numbers.length; i++) {
+            s.append(' ').append(i).append('=').append(numbers[i]);
+        }
+        s.append(String.format("%nTiles of %dx%d by mines:", BoardAnalysis.DENSITY_WINDOW,
+                BoardAnalysis.DENSITY_WINDOW));
+        for (int k = 0; k < density.length; k++) {
+            s.append(' ').append(k).append('=').append(density[k]);
+        }
+        return s.toString();
+    }
+
+    /**
+     * Prints the report of a batch of generated boards. The arguments are the
+     * width, height and number of mines of the boards, then optionally how many
+     * boards to generate and the seed of the first one.
+     */
+    public static void main(String[] args) {
+        int c = Integer.parseInt(args[0]);
+        int r = Integer.parseInt(args[1]);
+        int m = Integer.parseInt(args[2]);
+        long count = 100000;
+        long seed = 0;
+        if (args.length > 3) {
+            count = Long.parseLong(args[3]);
+        }
+        if (args.length > 4) {
+            seed = Long.parseLong(args[4]);
+        }
+
+        long start = System.nanoTime();
+        AnalysisReport report = generate(c, r, m, seed, count);
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        System.out.println(report);
+        System.out.println("Analyzed in " + millis + " ms");
+    }
+}
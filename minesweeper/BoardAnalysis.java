@@ -0,0 +1,157 @@
+/**
+ * BoardAnalysis computes the standard difficulty metrics of a generated
+ * Minesweeper board. It only reads the board through the model's getters, so
+ * any board can be analyzed whether it is fresh or already being played.
+ * 
+ * The 3BV of a board is the smallest number of clicks needed to clear it
+ * without flags: one click per opening plus one click per numbered square that
+ * does not border an opening. Islands are the groups of such numbered squares
+ * that touch each other.
+ * 
+ * Mine density is measured over tiles of DENSITY_WINDOW by DENSITY_WINDOW
+ * squares laid side by side from the top left corner; tiles cut off by the
+ * right or bottom edge are left out so every tile counted has the same area.
+ */
+public class BoardAnalysis {
+
+    // Side of the square tiles the mine density is measured over
+    public static final int DENSITY_WINDOW = 4;
+
+    private int threeBV;
+    private int openings;
+    private int islands;
+
+    // numbers[i] is how many safe squares have exactly i mines around them
+    private int[] numbers;
+
+    // density[k] is how many tiles hold exactly k mines
+    private int[] density;
+
+    /**
+     * Analyzes the board of the given game.
+     */
+    public BoardAnalysis(Minesweeper m) {
+        int c = m.width();
+        int r = m.height();
+        Topology t = m.topology();
+        openings = m.openings();
+        numbers = new int[9];
+        density = new int[DENSITY_WINDOW * DENSITY_WINDOW + 1];
+        int tilesAcross = c / DENSITY_WINDOW;
+        int tilesDown = r / DENSITY_WINDOW;
+        int[] tileMines = new int[tilesAcross * tilesDown];
+
+        // an isolated square is a numbered square that no opening will reveal
+        boolean[] isolated = new boolean[c * r];
+        int count = 0;
+        for (int row = 0; row < r; row++) {
+            for (int col = 0; col < c; col++) {
+                int value = m.getCell(col, row);
+                if (value != -1) {
+                    numbers[value]++;
+                } else if (col < tilesAcross * DENSITY_WINDOW
+                        && row < tilesDown * DENSITY_WINDOW) {
+                    tileMines[row / DENSITY_WINDOW * tilesAcross + col / DENSITY_WINDOW]++;
+                }
+                if (value > 0 && !bordersZero(m, col, row, t.neighbors(col, row))) {
+                    isolated[row * c + col] = true;
+                    count++;
+                }
+            }
+        }
+        threeBV = openings + count;
+        for (int k : tileMines) {
+            density[k]++;
+        }
+
+        // each island is cleared from the isolated array as it is counted
+        int[] stack = new int[count];
+        for (int i = 0; i < isolated.length; i++) {
+            if (isolated[i]) {
+                islands++;
+                isolated[i] = false;
+                int size = 1;
+                stack[0] = i;
+                while (size > 0) {
+                    size--;
+                    int col = stack[size] % c;
+                    int row = stack[size] / c;
+                    int[] d = t.neighbors(col, row);
+                    for (int k = 0; k < d.length; k += 2) {
+                        int x = col + d[k];
+                        int y = row + d[k + 1];
+                        if (isolated[y * c + x]) {
+                            isolated[y * c + x] = false;
+                            stack[size] = y * c + x;
+                            size++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * bordersZero tells whether any square around (c, r) holds a zero.
+     * 
+     * @param d neighbor offsets of (c, r) from the board's topology
+     */
+    private static boolean bordersZero(Minesweeper m, int c, int r, int[] d) {
+        for (int k = 0; k < d.length; k += 2) {
+            if (m.getCell(c + d[k], r + d[k + 1]) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * getter for the 3BV of the board
+     * 
+     * @return int that represents the fewest clicks needed to clear the board
+     */
+    public int threeBV() {
+        return threeBV;
+    }
+
+    /**
+     * getter for the number of openings on the board
+     * 
+     * @return int that represents the number of connected regions of zero cells
+     */
+    public int openings() {
+        return openings;
+    }
+
+    /**
+     * getter for the number of islands on the board
+     * 
+     * @return int that represents the number of groups of numbered squares that
+     *         do not border an opening
+     */
+    public int islands() {
+        return islands;
+    }
+
+    /**
+     * getter for how many safe squares have the given number of mines around
+     * them
+     * 
+     * @param n number of adjacent mines, from 0 to 8
+     * @return int that represents how many safe squares show n
+     */
+    public int numbers(int n) {
+        return numbers[n];
+    }
+
+    /**
+     * getter for how many tiles of DENSITY_WINDOW by DENSITY_WINDOW squares
+     * hold the given number of mines
+     * 
+     * @param k number of mines, from 0 to DENSITY_WINDOW * DENSITY_WINDOW
+     * @return int that represents how many tiles hold k mines
+     */
+    public int density(int k) {
+        return density[k];
+    }
+}
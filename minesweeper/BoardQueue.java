@@ -0,0 +1,96 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * BoardQueue generates Minesweeper boards of one size ahead of time on a
+ * background thread, so a new game can start without waiting for its board to
+ * be generated. A few boards are kept ready; the background thread waits while
+ * the queue is full and generates a replacement as soon as one is taken.
+ */
+public class BoardQueue {
+
+    // Number of boards kept ready
+    private static final int CAPACITY = 2;
+
+    private int width;
+    private int height;
+    private int mines;
+
+    private BlockingQueue<Minesweeper> ready;
+    private Thread generator;
+
+    /**
+     * Starts generating boards with the given parameters right away.
+     */
+    public BoardQueue(int c, int r, int m) {
+        width = c;
+        height = r;
+        mines = m;
+        ready = new ArrayBlockingQueue<Minesweeper>(CAPACITY);
+
+        generator = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while (true) {
+                        ready.put(new Minesweeper(width, height, mines, false));
+                    }
+                } catch (InterruptedException e) {
+                    // stop() was called
+                }
+            }
+        }, "Minesweeper board generator");
+        // the generator must never keep the program running on its own
+        generator.setDaemon(true);
+        generator.start();
+    }
+
+    /**
+     * next returns a new game. It is normally already generated; if the
+     * background thread has fallen behind the game is generated on the spot
+     * rather than waiting for it.
+     * 
+     * @return a new game that nobody else holds
+     */
+    public Minesweeper next() {
+        Minesweeper game = ready.poll();
+        if (game == null) {
+            game = new Minesweeper(width, height, mines, false);
+        }
+        return game;
+    }
+
+    /**
+     * stop ends the background thread. next keeps working afterwards but
+     * generates every game on the spot.
+     */
+    public void stop() {
+        generator.interrupt();
+    }
+
+    /**
+     * getter for the width of the boards
+     * 
+     * @return int that represents the width of the boards
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * getter for the height of the boards
+     * 
+     * @return int that represents the height of the boards
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * getter for the number of mines of the boards
+     * 
+     * @return int that represents the number of mines of the boards
+     */
+    public int mines() {
+        return mines;
+    }
+}
@@ -1,5 +1,7 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Paths;
 import javax.swing.*;
 
 /**
@@ -18,6 +20,18 @@ public class GameBoard extends JPanel {
 
     private Minesweeper m; // model for the game
     private JLabel status; // current status text
+    private BoardQueue boards; // boards generated ahead of time for new games
+
+    /**
+     * Finished games are recorded in the results store, which is null if its
+     * file could not be opened. started is when the first move of the current
+     * game was made, or 0 before it, so undoing every move does not restart
+     * the clock. recorded tells if the current game was already saved, so
+     * undoing and finishing again does not count it twice.
+     */
+    private ResultStore results;
+    private long started;
+    private boolean recorded;
 
     // Game constants
     public static final int BOARD_WIDTH = 700;
@@ -37,6 +51,22 @@ public class GameBoard extends JPanel {
      * Initializes the game board.
      */
     public GameBoard(JLabel statusInit, int w, int h, int mines) {
+        this(statusInit, new BoardQueue(w, h, mines));
+    }
+
+    /**
+     * Initializes a game board that only displays the given game, such as a
+     * snapshot of a simulated game. It does not react to the mouse.
+     */
+    public GameBoard(Minesweeper model) {
+        setBorder(BorderFactory.createLineBorder(Color.BLACK));
+        display(model);
+    }
+
+    /**
+     * Initializes the game board with boards that are already being generated.
+     */
+    public GameBoard(JLabel statusInit, BoardQueue boardsInit) {
         // creates border around the court area, JComponent method
         setBorder(BorderFactory.createLineBorder(Color.BLACK));
 
@@ -44,9 +74,18 @@ public class GameBoard extends JPanel {
         // keyboard focus, key events are handled by its key listener.
         setFocusable(true);
 
-        m = new Minesweeper(w, h, mines, false); // initializes model for the game
+        boards = boardsInit;
+        m = boards.next(); // initializes model for the game
         status = statusInit; // initializes the status JLabel
 
+        try {
+            results = new ResultStore(
+                    Paths.get(System.getProperty("user.home"), ".minesweeper-results")
+            );
+        } catch (IOException e) {
+            System.err.println("Results will not be saved: " + e.getMessage());
+        }
+
         // defines how large each square should based on the number of cells on the
         // board
         wSection = BOARD_WIDTH / m.width();
@@ -67,6 +106,9 @@ public class GameBoard extends JPanel {
                     if (SwingUtilities.isLeftMouseButton(e)) {
 
                         // left mouseclick reveals a square so the model is updated accordingly
+                        if (started == 0) {
+                            started = System.currentTimeMillis();
+                        }
                         m.playTurn(x, y);
 
                         updateStatus(); // updates the status JLabel
@@ -74,7 +116,7 @@ public class GameBoard extends JPanel {
                     } else if (SwingUtilities.isRightMouseButton(e)) {
 
                         // right mouse click flags a square so the model is updated accordingly
-                        if (m.flags().contains(new Point(x, y))) {
+                        if (m.isFlagged(x, y)) {
                             m.removeFlag(x, y);
                         } else {
                             m.addFlag(x, y);
@@ -88,10 +130,13 @@ public class GameBoard extends JPanel {
     }
 
     /**
-     * (Re-)sets the game to its initial state.
+     * (Re-)sets the game to its initial state. The new board was generated in
+     * the background while the previous game was played.
      */
     public void reset() {
-        m.reset(m.width(), m.height(), m.mines(), false);
+        m = boards.next();
+        started = 0;
+        recorded = false;
         status.setText(m.getStatus());
         repaint();
 
@@ -108,6 +153,16 @@ public class GameBoard extends JPanel {
         requestFocusInWindow();
     }
 
+    /**
+     * Displays the given game in place of the current one.
+     */
+    public void display(Minesweeper model) {
+        m = model;
+        wSection = BOARD_WIDTH / m.width();
+        hSection = BOARD_HEIGHT / m.height();
+        repaint();
+    }
+
     /**
      * Updates the JLabel to reflect the current state of the game.
      */
@@ -117,8 +172,32 @@ public class GameBoard extends JPanel {
         String won = m.checkWinner();
         if (won.equals("Lost")) {
             status.setText("Congratulations You Lost");
+            record();
         } else if (won.equals("Won")) {
             status.setText("Congratulations You Won");
+            record();
+            if (results != null) {
+                try {
+                    long best = results.bestTime(m.width(), m.height(), m.mines());
+                    status.setText("Congratulations You Won! Best time: " + best / 1000.0 + "s");
+                } catch (IOException e) {
+                    System.err.println("Could not read the best time: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the result of the finished game in the results store.
+     */
+    private void record() {
+        if (results != null && !recorded) {
+            try {
+                results.add(m, System.currentTimeMillis() - started);
+                recorded = true;
+            } catch (IOException e) {
+                System.err.println("Could not save the result: " + e.getMessage());
+            }
         }
     }
 
@@ -130,11 +209,11 @@ public class GameBoard extends JPanel {
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
 
+        for (int j = 1; j < m.width(); j++) {
+            g.drawLine(wSection * j, 0, wSection * j, BOARD_HEIGHT);
+        }
         for (int i = 1; i < m.height(); i++) {
-            for (int j = 1; j < m.width(); j++) {
-                g.drawLine(wSection * j, 0, wSection * j, BOARD_HEIGHT);
-                g.drawLine(0, hSection * i, BOARD_WIDTH, hSection * i);
-            }
+            g.drawLine(0, hSection * i, BOARD_WIDTH, hSection * i);
         }
 
         int shiftX = wSection / 2;
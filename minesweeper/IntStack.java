@@ -0,0 +1,97 @@
+import java.util.Arrays;
+
+/**
+ * IntStack is a stack of ints kept in fixed-size chunks. It holds the undo
+ * history of Minesweeper.
+ * 
+ * A stack can be forked in constant time: the fork shares every chunk with
+ * the original, and whichever stack writes to a shared chunk first copies that
+ * chunk alone. Each stack carries an owner token, and a chunk may only be
+ * written by the stack whose token it was created or copied under; forking
+ * gives both stacks new tokens so neither owns the shared chunks any more.
+ * Pushing and popping allocate nothing once the stack has reached its working
+ * size and owns its top chunk.
+ */
+public class IntStack {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private int[][] chunks = new int[0][];
+    private Object[] owners = new Object[0];
+
+    // Token of this stack, and of the stack that may write chunks and owners
+    private Object token = new Object();
+    private Object outerOwner = token;
+
+    private int size;
+
+    /**
+     * push puts a value on top of the stack.
+     */
+    public void push(int value) {
+        int i = size >>> CHUNK_BITS;
+        if (outerOwner != token || i == chunks.length) {
+            copyOuter(i + 1);
+        }
+        if (owners[i] != token) {
+            // the entries below the top of a shared chunk still belong to this stack
+            int[] chunk = new int[CHUNK_SIZE];
+            if (chunks[i] != null) {
+                System.arraycopy(chunks[i], 0, chunk, 0, size & (CHUNK_SIZE - 1));
+            }
+            chunks[i] = chunk;
+            owners[i] = token;
+        }
+        chunks[i][size & (CHUNK_SIZE - 1)] = value;
+        size++;
+    }
+
+    /**
+     * copyOuter is a helper function of push that gives this stack its own
+     * array of chunks with room for at least the given number of chunks.
+     */
+    private void copyOuter(int length) {
+        int n = chunks.length;
+        if (length > n) {
+            n = Math.max(length, 2 * n);
+        }
+        chunks = Arrays.copyOf(chunks, n);
+        owners = Arrays.copyOf(owners, n);
+        outerOwner = token;
+    }
+
+    /**
+     * pop removes the value on top of the stack and returns it. The stack must
+     * not be empty.
+     */
+    public int pop() {
+        size--;
+        return chunks[size >>> CHUNK_BITS][size & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * getter for the number of values on the stack
+     * 
+     * @return int that represents the number of values on the stack
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * fork returns a stack holding the same values as this one, in constant
+     * time. Later changes to either stack do not affect the other.
+     * 
+     * @return the new stack
+     */
+    public IntStack fork() {
+        IntStack copy = new IntStack();
+        copy.chunks = chunks;
+        copy.owners = owners;
+        copy.outerOwner = outerOwner;
+        copy.size = size;
+        token = new Object();
+        return copy;
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.Arrays;
+
+/**
+ * LongIntMap maps long keys to int values without boxing either. It holds the
+ * mines, flags and frontier positions of sparse Minesweeper boards, keyed by
+ * the flat index of a square, and is used as a set by storing 1.
+ * 
+ * Keys live in one array and values in another, found by open addressing with
+ * linear probing. The table is kept at most half full, and removing a key
+ * shifts the keys probed after it back instead of leaving a marker, so lookups
+ * never slow down as keys come and go. Keys must not be negative, and get
+ * returns 0 for a missing key, so 0 is never stored as a value.
+ */
+public class LongIntMap {
+
+    private static final long EMPTY = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    // 64 minus the log of the table length, to take the top bits of the hash
+    private int shift;
+
+    /**
+     * Creates an empty map.
+     */
+    public LongIntMap() {
+        allocate(16);
+    }
+
+    /**
+     * allocate is a helper function that sets up an empty table of the given
+     * length, which must be a power of two.
+     */
+    private void allocate(int length) {
+        keys = new long[length];
+        Arrays.fill(keys, EMPTY);
+        values = new int[length];
+        shift = 64 - Integer.numberOfTrailingZeros(length);
+    }
+
+    /**
+     * slot returns where the probe for the given key starts.
+     */
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * get returns the value of the given key.
+     * 
+     * @return the value, or 0 if the key is not in the map
+     */
+    public int get(long key) {
+        if (size == 0) {
+            return 0;
+        }
+        int mask = keys.length - 1;
+        for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * put sets the value of the given key, adding the key if needed.
+     * 
+     * @param value the new value, which must not be 0
+     */
+    public void put(long key, int value) {
+        int mask = keys.length - 1;
+        int i = slot(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        if (2 * size > keys.length) {
+            rehash();
+        }
+    }
+
+    /**
+     * rehash is a helper function of put that moves every key to a table twice
+     * as long.
+     */
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(2 * oldKeys.length);
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != EMPTY) {
+                int i = slot(oldKeys[j]);
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * remove removes the given key from the map, if it is there.
+     */
+    public void remove(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key);
+        while (keys[i] != key) {
+            if (keys[i] == EMPTY) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        size--;
+
+        // keys probed past the hole move back into it unless their probe starts after it
+        for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = EMPTY;
+    }
+
+    /**
+     * getter for the number of keys in the map
+     * 
+     * @return int that represents the number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * keys returns every key of the map, in no particular order.
+     * 
+     * @return a new array holding the keys
+     */
+    public long[] keys() {
+        long[] all = new long[size];
+        int n = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                all[n] = key;
+                n++;
+            }
+        }
+        return all;
+    }
+
+    /**
+     * copy returns a map holding the same keys and values as this one.
+     * 
+     * @return the new map
+     */
+    public LongIntMap copy() {
+        LongIntMap copy = new LongIntMap();
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.size = size;
+        copy.shift = shift;
+        return copy;
+    }
+}
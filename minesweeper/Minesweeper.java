@@ -1,285 +1,1590 @@
 import java.awt.Point;
-import java.util.ArrayList;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedList;
+import java.util.Random;
 
 public class Minesweeper {
 
     /**
      * Represents the board of the Minesweeper grid.
      * Revealed tells if a cell has been revealed by
-     * the player.
+     * the player. A square holds -1 for a mine or a number
+     * from 0 to 8, so a byte per square is enough.
      */
-    private int[][] board;
+    private byte[][] board;
     private boolean[][] revealed;
 
     // Represents the state of the game; can be "Still Playing", "Lost", or "Won"
     private String gameState;
 
+    /**
+     * Running counts of the revealed squares, split into safe squares and mines,
+     * so the game state and numRevealed never need to scan the board.
+     */
+    private int safeRevealed;
+    private int minesRevealed;
+
     // Parameters of the game board; mines is the number of mines
     private int width;
     private int height;
     private int mines;
 
-    /**
-     * Collections to implement the flag and undo function.
-     * Flags hold each point of square that has been flag.
-     * Undo holds the sequential moves that the user makes. Each time a move is made
-     * the square is added to the end.
-     * The numChange collection is used to track how many squares were revealed per
-     * move. This is used to help implement the undo function.
-     */
-    private LinkedList<Point> flags;
-    private LinkedList<Point> undo;
-    private ArrayList<Integer> numChange;
+    // Which squares touch each other; the classic game is a Topology.rectangle
+    private Topology topology;
+
+    // Seed the mines were placed from, so a game can be recorded and replayed
+    private long seed;
+
+    /**
+     * Arrays to implement the flag and undo function.
+     * Flagged tells if a square has been flagged, and numFlags counts them.
+     * Undo holds the sequential squares that the user reveals as flat indices
+     * (row * width + col). Each time a square is revealed it is added to the end.
+     * The numChange stack is used to track how many squares were revealed per
+     * move. This is used to help implement the undo function. A flood fill on a
+     * sparse board is recorded as runs instead, see fillRuns, and its entry in
+     * numChange is minus the number of runs.
+     * Both stacks keep their room once they have grown, so playing, flagging
+     * and undoing do not allocate once a game is underway.
+     */
+    private boolean[][] flagged;
+    private int numFlags;
+    private IntStack undo;
+    private IntStack numChange;
+
+    /**
+     * Opening index built by reset. An opening is a connected region of zero
+     * cells together with the numbered cells bordering it, which is exactly the
+     * set of squares revealZero uncovers from any zero inside it.
+     * openingId holds the opening of each zero cell (-1 for every other cell).
+     * The cells of opening i are stored as flat indices (row * width + col) in
+     * openingCells, from openingStart[i] up to but not including
+     * openingStart[i + 1].
+     */
+    private int[] openingId;
+    private int[] openingStart;
+    private int[] openingCells;
+
+    // Number of flagged zero cells inside each opening
+    private int[] openingFlags;
+
+    /**
+     * Frontier index for solvers and hints. The frontier is the set of revealed
+     * numbered squares that still touch a hidden, unflagged square.
+     * hiddenAround counts the hidden, unflagged neighbors of every square.
+     * The frontier squares are the first frontierSize entries of frontier, as
+     * flat indices, and frontierPos holds one more than the position of each
+     * square in frontier, or 0 for squares outside it. All of them are kept up
+     * to date as squares are revealed, hidden, flagged and unflagged.
+     */
+    private byte[][] hiddenAround;
+    private int[] frontier;
+    private int frontierSize;
+    private int[][] frontierPos;
+
+    /**
+     * Random number generator of a first-click-safe game whose mines have not
+     * been placed yet. It is null once the board has been generated.
+     */
+    private Random pending;
+
+    /**
+     * Copy-on-write bookkeeping for fork. A fork shares the board and the
+     * opening index, which never change once the mines are placed, and also
+     * shares the grids revealed, flagged, hiddenAround and frontierPos until
+     * one of the games writes to them. Every game has its own token; rowOwner
+     * holds the token of the game allowed to write each row of the grids, and
+     * gridOwner the token of the game allowed to write the outer arrays of the
+     * grids and rowOwner itself. Before its first write to a row a game that
+     * does not own it copies just that row. frontierOwner and
+     * openingFlagsOwner do the same for the frontier list and openingFlags.
+     */
+    private Object token;
+    private Object gridOwner;
+    private Object[] rowOwner;
+    private Object frontierOwner;
+    private Object openingFlagsOwner;
+
+    /**
+     * Sparse backend, used instead of the per-square grids above on boards of
+     * at least SPARSE_AREA squares with fewer than one mine per SPARSE_DENSITY
+     * squares, where those grids would be almost all zeros. mineSet holds the
+     * mines by flat index, and getCell counts them around a square when asked.
+     * runs holds the revealed squares of each row as sorted runs: runs[r][0] is
+     * the number of runs, and run i covers the columns from runs[r][2 * i + 1]
+     * up to but not including runs[r][2 * i + 2]; a row nothing was revealed in
+     * is null. flagSet holds the flagged squares, rowFlags the number of flags
+     * in each row, and frontierSet one more than the position of each frontier
+     * square in frontier. nonZero holds the sorted columns of the squares of
+     * each row that are mines or next to one, so every other square is a zero.
+     * hiddenAround is counted when it is needed, and there is no opening index:
+     * openings are revealed by fillRuns a run of squares at a time, and undo
+     * records each run as its row, first column and end column instead of one
+     * entry per square. Memory therefore grows with the mines, flags, frontier
+     * and revealed runs rather than with the area of the board. In the sparse
+     * backend rowOwner guards the runs of each row, and gridOwner the runs
+     * array, flagSet and rowFlags.
+     */
+    public static final int SPARSE_AREA = 1 << 20;
+    public static final int SPARSE_DENSITY = 100;
+    private boolean sparse;
+    private LongIntMap mineSet;
+    private int[][] nonZero;
+    private int[][] runs;
+    private LongIntMap flagSet;
+    private int[] rowFlags;
+    private LongIntMap frontierSet;
+
+    // Work stack of revealZero and fillRuns, kept between calls so it is only allocated once
+    private int[] stack = new int[0];
+
+    /**
+     * Constructor sets up game state.
+     */
+    public Minesweeper(int c, int r, int m, boolean fixed) {
+        int tempMines = m;
+        if (m > c * r) {
+            tempMines = c * r;
+        }
+        reset(c, r, tempMines, fixed);
+    }
+
+    /**
+     * Constructor sets up a game whose mines are placed from the given seed, so
+     * the same seed always produces the same board.
+     */
+    public Minesweeper(int c, int r, int m, long seed) {
+        int tempMines = m;
+        if (m > c * r) {
+            tempMines = c * r;
+        }
+        reset(c, r, tempMines, seed);
+    }
+
+    /**
+     * Constructor sets up a game on the given topology whose mines are placed
+     * from the given seed.
+     */
+    public Minesweeper(Topology t, int m, long seed) {
+        int tempMines = m;
+        if (m > t.width() * t.height()) {
+            tempMines = t.width() * t.height();
+        }
+        reset(t, tempMines, seed);
+    }
+
+    /**
+     * Constructor sets up a game on the given topology whose mines are placed
+     * from the given seed, with the backend chosen by the caller instead of by
+     * density, so tests can compare both backends on the same board.
+     */
+    Minesweeper(Topology t, int m, long seed, boolean sparse) {
+        prepare(t, m, sparse);
+        placeMines(new Random(seed), -1, -1);
+        buildOpenings(width, height);
+        this.seed = seed;
+    }
+
+    /**
+     * Constructor used by readBoard, which sets up the game itself.
+     */
+    private Minesweeper() {
+    }
+
+    /**
+     * revealZero is a helper function of playTurn. This is called when a
+     * cell containing the value 0 (meaning no mines are around) is revealed.
+     * As a result, this method will reveal all nearby zeros around the original
+     * zero, and the numbered squares around each of those zeros. Zeros waiting
+     * to have their neighbors revealed are kept on an explicit stack rather than
+     * the call stack, so even an opening spanning a huge board cannot overflow
+     * it. If a square is flagged then the square will not be revealed.
+     * 
+     * @param c column to play in
+     * @param r row to play in
+     */
+    private void revealZero(int c, int r) {
+        if (isCellRevealed(c, r) || isFlagged(c, r)) {
+            return;
+        }
+        reveal(c, r);
+        int size = push(0, r * width + c);
+        while (size > 0) {
+            size--;
+            int col = stack[size] % width;
+            int row = stack[size] / width;
+            int[] d = topology.neighbors(col, row);
+            for (int k = 0; k < d.length; k += 2) {
+                int x = col + d[k];
+                int y = row + d[k + 1];
+                if (!isCellRevealed(x, y) && !isFlagged(x, y) && reveal(x, y) == 0) {
+                    size = push(size, y * width + x);
+                }
+            }
+        }
+    }
+
+    /**
+     * push is a helper function of revealZero that puts a cell on top of the
+     * work stack, growing the stack if it is full.
+     * 
+     * @param size number of cells currently on the stack
+     * @param cell flat index of the cell to push
+     * @return the new number of cells on the stack
+     */
+    private int push(int size, int cell) {
+        if (size == stack.length) {
+            stack = grow(stack);
+        }
+        stack[size] = cell;
+        return size + 1;
+    }
+
+    /**
+     * revealOpening is a helper function of playTurn that reveals the opening
+     * containing the zero cell at (c, r) by walking its precomputed cells
+     * instead of searching for them. A flagged zero inside the opening can cut
+     * it into pieces, so in that case the flood fill in revealZero is used
+     * instead. Sparse boards have no opening index and use fillRuns. Flagged
+     * border cells are simply skipped.
+     * 
+     * @param c column to play in
+     * @param r row to play in
+     */
+    private void revealOpening(int c, int r) {
+        if (isCellRevealed(c, r)) {
+            return;
+        }
+        if (sparse) {
+            fillRuns(c, r);
+            return;
+        }
+        int id = openingId[r * width + c];
+        if (openingFlags[id] > 0) {
+            revealZero(c, r);
+            return;
+        }
+        for (int i = openingStart[id]; i < openingStart[id + 1]; i++) {
+            int x = openingCells[i] % width;
+            int y = openingCells[i] / width;
+            if (!revealed[y][x] && !flagged[y][x]) {
+                reveal(x, y);
+            }
+        }
+    }
+
+    /**
+     * fillRuns is the flood fill of sparse boards, which reveals the opening
+     * containing the hidden zero at (c, r). It works on runs of squares rather
+     * than single squares: a run of zeros reveals the columns next to it in
+     * its own row and the rows above and below, and the zeros uncovered there
+     * are found between the entries of nonZero and become new runs to expand.
+     * Runs are kept on the work stack as (row, start, end) and every revealed
+     * run is recorded in undo the same way, so both the time and the memory of
+     * a fill grow with the runs and the squares near mines, not with the area
+     * of the opening.
+     * 
+     * @param c column to play in
+     * @param r row to play in
+     */
+    private void fillRuns(int c, int r) {
+        int size = uncover(r, c, c + 1, 0);
+        while (size > 0) {
+            size -= 3;
+            int y = stack[size];
+            int start = stack[size + 1];
+            int end = stack[size + 2];
+            for (int dr = -1; dr <= 1; dr++) {
+                int row = rowAt(y + dr);
+                if (row == -1) {
+                    continue;
+                }
+                // on a hex board a square only touches two squares of the rows above and below
+                int lo = start - 1;
+                int hi = end + 1;
+                if (topology.isHex() && dr != 0) {
+                    if (y % 2 == 0) {
+                        hi = end;
+                    } else {
+                        lo = start;
+                    }
+                }
+                size = visitColumns(row, lo, hi, size, true);
+            }
+        }
+    }
+
+    /**
+     * rowAt is a helper function of the sparse backend that maps a row number
+     * that may lie off the board onto the board: on a torus it wraps around,
+     * and otherwise it has no row.
+     * 
+     * @return the row on the board, or -1 if there is none
+     */
+    private int rowAt(int y) {
+        if (y >= 0 && y < height) {
+            return y;
+        } else if (topology.wraps()) {
+            return (y + height) % height;
+        }
+        return -1;
+    }
+
+    /**
+     * visitColumns is a helper function of fillRuns and runChanged that visits
+     * the columns from lo up to but not including hi of a row. Columns off the
+     * board wrap around on a torus and are cut off otherwise, so the range is
+     * visited as up to two pieces that lie on the board. Each piece is either
+     * uncovered or has its numbered squares checked for the frontier.
+     * 
+     * @param size    number of entries on the work stack of fillRuns
+     * @param uncover whether to uncover the pieces rather than check them
+     * @return the new number of entries on the work stack
+     */
+    private int visitColumns(int row, int lo, int hi, int size, boolean uncover) {
+        if (!topology.wraps()) {
+            return visitPiece(row, Math.max(lo, 0), Math.min(hi, width), size, uncover);
+        } else if (hi - lo >= width) {
+            return visitPiece(row, 0, width, size, uncover);
+        } else if (lo < 0) {
+            size = visitPiece(row, lo + width, width, size, uncover);
+            return visitPiece(row, 0, hi, size, uncover);
+        } else if (hi > width) {
+            size = visitPiece(row, lo, width, size, uncover);
+            return visitPiece(row, 0, hi - width, size, uncover);
+        }
+        return visitPiece(row, lo, hi, size, uncover);
+    }
+
+    /**
+     * visitPiece is a helper function of visitColumns that visits one piece of
+     * a row, from column start up to but not including end.
+     */
+    private int visitPiece(int row, int start, int end, int size, boolean uncover) {
+        if (uncover) {
+            return uncover(row, start, end, size);
+        }
+        int[] columns = nonZero[row];
+        for (int j = ceiling(columns, start); j < columns.length && columns[j] < end; j++) {
+            frontierCheck(columns[j], row);
+        }
+        return size;
+    }
+
+    /**
+     * uncover is a helper function of fillRuns that reveals every hidden,
+     * unflagged square of row r from column start up to but not including end.
+     * 
+     * @param size number of entries on the work stack of fillRuns
+     * @return the new number of entries on the work stack
+     */
+    private int uncover(int r, int start, int end, int size) {
+        int c = start;
+        while (c < end) {
+            int[] row = runs[r];
+            int i = -1;
+            int next = width;
+            if (row != null) {
+                i = findRun(row, c);
+                if (i + 1 < row[0]) {
+                    next = row[2 * i + 3];
+                }
+            }
+            if (i >= 0 && c < row[2 * i + 2]) {
+                c = row[2 * i + 2];
+            } else if (rowFlags[r] > 0 && isFlagged(c, r)) {
+                c++;
+            } else {
+                // the hidden squares up to the next revealed run or flag
+                int stop = Math.min(end, next);
+                int last = c + 1;
+                while (last < stop && (rowFlags[r] == 0 || !isFlagged(last, r))) {
+                    last++;
+                }
+                size = uncoverHidden(r, c, last, size);
+                c = last;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * uncoverHidden is a helper function of uncover that reveals the hidden,
+     * unflagged squares of row r from column start up to but not including
+     * end. A zero at either end reveals the square past it, so the run is first
+     * stretched along the row across zeros, as far as the first numbered
+     * square, revealed square, flag or edge. The zeros of the revealed run are
+     * pushed on the work stack of fillRuns.
+     * 
+     * @param size number of entries on the work stack of fillRuns
+     * @return the new number of entries on the work stack
+     */
+    private int uncoverHidden(int r, int start, int end, int size) {
+        int[] columns = nonZero[r];
+        int[] row = runs[r];
+        if (isZero(columns, start)) {
+            int i = -1;
+            if (row != null) {
+                i = findRun(row, start - 1);
+            }
+            int limit = 0;
+            if (i >= 0) {
+                limit = row[2 * i + 2];
+            }
+            int j = ceiling(columns, start) - 1;
+            if (j >= 0) {
+                limit = Math.max(limit, columns[j]);
+            }
+            for (int c = start - 1; c >= limit && rowFlags[r] > 0; c--) {
+                if (isFlagged(c, r)) {
+                    limit = c + 1;
+                }
+            }
+            start = limit;
+        }
+        if (isZero(columns, end - 1)) {
+            int limit = width;
+            if (row != null) {
+                int i = findRun(row, end - 1);
+                if (i + 1 < row[0]) {
+                    limit = row[2 * i + 3];
+                }
+            }
+            int j = ceiling(columns, end);
+            if (j < columns.length) {
+                limit = Math.min(limit, columns[j] + 1);
+            }
+            for (int c = end; c < limit && rowFlags[r] > 0; c++) {
+                if (isFlagged(c, r)) {
+                    limit = c;
+                }
+            }
+            end = limit;
+        }
+
+        own(r);
+        addToRuns(r, start, end);
+        undo.push(r);
+        undo.push(start);
+        undo.push(end);
+        safeRevealed += end - start;
+        runChanged(r, start, end);
+
+        // the zeros of the run lie between its numbered squares
+        int j = ceiling(columns, start);
+        int c = start;
+        while (c < end) {
+            int stop = end;
+            if (j < columns.length) {
+                stop = Math.min(end, columns[j]);
+            }
+            if (stop > c) {
+                size = push(size, r);
+                size = push(size, c);
+                size = push(size, stop);
+            }
+            c = stop + 1;
+            j++;
+        }
+        return size;
+    }
+
+    /**
+     * runChanged is a helper function of the sparse backend that brings the
+     * frontier up to date after the squares of row r from column start up to
+     * but not including end were revealed or hidden. Only the numbered squares
+     * in and around the run can enter or leave the frontier because of it.
+     */
+    private void runChanged(int r, int start, int end) {
+        for (int dr = -1; dr <= 1; dr++) {
+            int row = rowAt(r + dr);
+            if (row != -1) {
+                visitColumns(row, start - 1, end + 1, 0, false);
+            }
+        }
+    }
+
+    /**
+     * frontierCheck is a helper function of runChanged that puts the square at
+     * (c, r), which is a mine or next to one, on the frontier or takes it off
+     * as its neighbors require.
+     */
+    private void frontierCheck(int c, int r) {
+        if (isMine(c, r)) {
+            return;
+        }
+        boolean covered = isCellRevealed(c, r) && hiddenNeighbors(c, r) > 0;
+        if (!covered && isFrontier(c, r)) {
+            removeFrontier(c, r);
+        } else if (covered && !isFrontier(c, r)) {
+            addFrontier(c, r);
+        }
+    }
+
+    /**
+     * isZero is a helper function of the sparse backend that tells if column c
+     * of a row holds a zero, given the nonZero columns of the row.
+     */
+    private static boolean isZero(int[] columns, int c) {
+        return Arrays.binarySearch(columns, c) < 0;
+    }
+
+    /**
+     * ceiling is a helper function of the sparse backend that finds the first
+     * entry of a sorted array that is at least c.
+     * 
+     * @return position of the entry, or the length of the array if there is none
+     */
+    private static int ceiling(int[] sorted, int c) {
+        int i = Arrays.binarySearch(sorted, c);
+        if (i < 0) {
+            return -i - 1;
+        }
+        return i;
+    }
+
+    /**
+     * hideRun is the reverse of uncoverHidden and is used by undo. It covers
+     * the squares of row r from column start up to but not including end.
+     */
+    private void hideRun(int r, int start, int end) {
+        own(r);
+        removeFromRuns(r, start, end);
+        safeRevealed -= end - start;
+        runChanged(r, start, end);
+    }
+
+    /**
+     * reveal uncovers the square at (c, r), records it for undo and updates
+     * the running counts. Every square the player uncovers goes through here.
+     * 
+     * @return the contents of the square, as returned by getCell
+     */
+    private int reveal(int c, int r) {
+        own(r);
+        if (sparse) {
+            addToRuns(r, c, c + 1);
+        } else {
+            revealed[r][c] = true;
+        }
+        undo.push(r * width + c);
+        int n = getCell(c, r);
+        if (n == -1) {
+            minesRevealed++;
+        } else {
+            safeRevealed++;
+        }
+        coverChanged(c, r, -1);
+        if (n > 0 && hiddenNeighbors(c, r) > 0) {
+            addFrontier(c, r);
+        }
+        return n;
+    }
+
+    /**
+     * hide covers the square at (c, r) again and updates the running counts.
+     * It is the reverse of reveal and is used by undo.
+     */
+    private void hide(int c, int r) {
+        own(r);
+        if (sparse) {
+            removeFromRuns(r, c, c + 1);
+        } else {
+            revealed[r][c] = false;
+        }
+        if (isMine(c, r)) {
+            minesRevealed--;
+        } else {
+            safeRevealed--;
+        }
+        if (isFrontier(c, r)) {
+            removeFrontier(c, r);
+        }
+        coverChanged(c, r, 1);
+    }
+
+    /**
+     * coverChanged updates the frontier after the square at (c, r) stopped
+     * (change = -1) or started (change = 1) being hidden and unflagged. Only
+     * its neighbors can enter or leave the frontier because of it. Sparse
+     * boards do not store hiddenAround, so it is counted for the revealed
+     * numbered neighbors instead.
+     */
+    private void coverChanged(int c, int r, int change) {
+        int[] d = topology.neighbors(c, r);
+        for (int k = 0; k < d.length; k += 2) {
+            int x = c + d[k];
+            int y = r + d[k + 1];
+            if (sparse) {
+                if (isCellRevealed(x, y) && nextToMine(x, y) && !isMine(x, y)) {
+                    boolean covered = hiddenNeighbors(x, y) > 0;
+                    if (!covered && isFrontier(x, y)) {
+                        removeFrontier(x, y);
+                    } else if (covered && !isFrontier(x, y)) {
+                        addFrontier(x, y);
+                    }
+                }
+                continue;
+            }
+            own(y);
+            hiddenAround[y][x] += change;
+            if (revealed[y][x] && board[y][x] > 0) {
+                if (hiddenAround[y][x] == 0) {
+                    removeFrontier(x, y);
+                } else if (change > 0 && hiddenAround[y][x] == 1) {
+                    addFrontier(x, y);
+                }
+            }
+        }
+    }
+
+    private void addFrontier(int c, int r) {
+        ownFrontier();
+        if (frontierSize == frontier.length) {
+            frontier = grow(frontier);
+        }
+        frontier[frontierSize] = r * width + c;
+        frontierSize++;
+        if (sparse) {
+            frontierSet.put(r * width + c, frontierSize);
+        } else {
+            frontierPos[r][c] = frontierSize;
+        }
+    }
+
+    private void removeFrontier(int c, int r) {
+        // the last square of the frontier takes the place of the removed one
+        ownFrontier();
+        if (sparse) {
+            int i = frontierSet.get(r * width + c) - 1;
+            frontierSize--;
+            int last = frontier[frontierSize];
+            frontier[i] = last;
+            frontierSet.put(last, i + 1);
+            frontierSet.remove(r * width + c);
+            return;
+        }
+        int i = frontierPos[r][c] - 1;
+        frontierSize--;
+        int last = frontier[frontierSize];
+        frontier[i] = last;
+        own(last / width);
+        frontierPos[last / width][last % width] = i + 1;
+        frontierPos[r][c] = 0;
+    }
+
+    /**
+     * hiddenNeighbors returns how many neighbors of (c, r) are hidden and not
+     * flagged, counting them on sparse boards.
+     */
+    private int hiddenNeighbors(int c, int r) {
+        if (!sparse) {
+            return hiddenAround[r][c];
+        }
+        int n = 0;
+        int[] d = topology.neighbors(c, r);
+        for (int k = 0; k < d.length; k += 2) {
+            if (!isCellRevealed(c + d[k], r + d[k + 1]) && !isFlagged(c + d[k], r + d[k + 1])) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * findRun is a helper function of the sparse backend that finds the last
+     * revealed run of a row starting at or before column c.
+     * 
+     * @param row runs of the row, as described at runs
+     * @return number of the run, or -1 if every run starts after c
+     */
+    private static int findRun(int[] row, int c) {
+        int found = -1;
+        int low = 0;
+        int high = row[0] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (row[2 * mid + 1] <= c) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * addToRuns is a helper function of reveal and uncoverHidden that adds the
+     * hidden squares of row r from column start up to but not including end to
+     * the revealed runs of the row, extending or joining the runs next to them
+     * when they touch.
+     */
+    private void addToRuns(int r, int start, int end) {
+        if (runs[r] == null) {
+            runs[r] = new int[5];
+        }
+        int[] row = runs[r];
+        int i = findRun(row, start);
+        boolean left = i >= 0 && row[2 * i + 2] == start;
+        boolean right = i + 1 < row[0] && row[2 * i + 3] == end;
+        if (left && right) {
+            row[2 * i + 2] = row[2 * i + 4];
+            removeRun(row, i + 1);
+        } else if (left) {
+            row[2 * i + 2] = end;
+        } else if (right) {
+            row[2 * i + 3] = start;
+        } else {
+            insertRun(r, i + 1, start, end);
+        }
+    }
+
+    /**
+     * removeFromRuns is a helper function of hide and hideRun that takes the
+     * squares of row r from column start up to but not including end, which
+     * lie inside one revealed run, out of the runs of the row, splitting the
+     * run in two when they are inside it.
+     */
+    private void removeFromRuns(int r, int start, int end) {
+        int[] row = runs[r];
+        int i = findRun(row, start);
+        int first = row[2 * i + 1];
+        int last = row[2 * i + 2];
+        if (first == start && last == end) {
+            removeRun(row, i);
+        } else if (first == start) {
+            row[2 * i + 1] = end;
+        } else if (last == end) {
+            row[2 * i + 2] = start;
+        } else {
+            row[2 * i + 2] = start;
+            insertRun(r, i + 1, end, last);
+        }
+    }
+
+    /**
+     * insertRun is a helper function of addToRuns and removeFromRuns that puts
+     * a new run at position i of row r, growing the row if it is full.
+     */
+    private void insertRun(int r, int i, int start, int end) {
+        int[] row = runs[r];
+        int n = row[0];
+        if (2 * n + 3 > row.length) {
+            row = Arrays.copyOf(row, 2 * row.length + 1);
+            runs[r] = row;
+        }
+        System.arraycopy(row, 2 * i + 1, row, 2 * i + 3, 2 * (n - i));
+        row[2 * i + 1] = start;
+        row[2 * i + 2] = end;
+        row[0] = n + 1;
+    }
+
+    /**
+     * removeRun is a helper function of addToRuns and removeFromRuns that
+     * deletes run i of a row.
+     */
+    private static void removeRun(int[] row, int i) {
+        int n = row[0];
+        System.arraycopy(row, 2 * i + 3, row, 2 * i + 1, 2 * (n - i - 1));
+        row[0] = n - 1;
+    }
+
+    /**
+     * own makes sure this game may write row r of the per-square grids,
+     * copying the row first if it is shared with a fork.
+     */
+    private void own(int r) {
+        if (gridOwner != token) {
+            if (sparse) {
+                runs = runs.clone();
+                flagSet = flagSet.copy();
+                rowFlags = rowFlags.clone();
+            } else {
+                revealed = revealed.clone();
+                flagged = flagged.clone();
+                hiddenAround = hiddenAround.clone();
+                frontierPos = frontierPos.clone();
+            }
+            rowOwner = rowOwner.clone();
+            gridOwner = token;
+        }
+        if (rowOwner[r] != token) {
+            if (sparse) {
+                if (runs[r] != null) {
+                    runs[r] = runs[r].clone();
+                }
+            } else {
+                revealed[r] = revealed[r].clone();
+                flagged[r] = flagged[r].clone();
+                hiddenAround[r] = hiddenAround[r].clone();
+                frontierPos[r] = frontierPos[r].clone();
+            }
+            rowOwner[r] = token;
+        }
+    }
+
+    /**
+     * ownFrontier makes sure this game may write the frontier list, copying it
+     * first if it is shared with a fork.
+     */
+    private void ownFrontier() {
+        if (frontierOwner != token) {
+            frontier = frontier.clone();
+            if (sparse) {
+                frontierSet = frontierSet.copy();
+            }
+            frontierOwner = token;
+        }
+    }
+
+    /**
+     * grow returns a copy of the given stack with twice the room.
+     */
+    private static int[] grow(int[] stack) {
+        int[] bigger = new int[Math.max(16, stack.length * 2)];
+        System.arraycopy(stack, 0, bigger, 0, stack.length);
+        return bigger;
+    }
+
+    /**
+     * playTurn allows the player to play a turn. Returns true if the move is
+     * successful and false if a player tries to play in a location that is
+     * taken or after the game has ended.
+     *
+     * @param c column to play in
+     * @param r row to play in
+     * @return whether the turn was successful
+     */
+    public boolean playTurn(int c, int r) {
+        if (!isFlagged(c, r)) {
+            if (pending != null) {
+                placeMines(pending, c, r);
+                pending = null;
+                buildOpenings(width, height);
+            }
+            if (getCell(c, r) == 0) {
+                int initial = undo.size();
+                revealOpening(c, r);
+                // clicking a revealed zero whose neighbors are all revealed is not a move
+                if (undo.size() == initial) {
+                    return false;
+                }
+                if (sparse) {
+                    // fillRuns records three entries per run
+                    numChange.push(-(undo.size() - initial) / 3);
+                } else {
+                    numChange.push(undo.size() - initial);
+                }
+                checkWinner();
+                return true;
+            } else if (gameState.equals("Still Playing") && !isCellRevealed(c, r)) {
+                reveal(c, r);
+                numChange.push(1);
+                checkWinner();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * checkWinner checks whether the game has reached a win condition.
+     * The game is lost as soon as a mine is revealed and won once every
+     * other square is. Both follow from the running counts kept by reveal
+     * and hide, so this takes the same time on any board size.
+     *
+     * @return "Still Playing" if the game is not finished, "Won" if the player won,
+     *         and
+     *         "Lost" if the player lost.
+     */
+    public String checkWinner() {
+        if (minesRevealed > 0) {
+            gameState = "Lost";
+        } else if (safeRevealed == width * height - mines) {
+            gameState = "Won";
+        } else {
+            gameState = "Still Playing";
+        }
+        return gameState;
+    }
+
+    /**
+     * printGameState prints the grid of the board
+     * for debugging.
+     */
+    public void printGameState() {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        try {
+            writeGameState(out);
+            out.write(System.lineSeparator());
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * writeGameState writes the grid of the board as the player sees it: "#"
+     * for a hidden square, "*" for a revealed mine and the number of a revealed
+     * square otherwise, each followed by a space. Every row is built in one
+     * buffer and written in one call, so boards of any size can be dumped.
+     * 
+     * @param out where to write the grid
+     */
+    public void writeGameState(Writer out) throws IOException {
+        char[] line = new char[2 * width];
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (!isCellRevealed(j, i)) {
+                    line[2 * j] = '#';
+                } else if (isMine(j, i)) {
+                    line[2 * j] = '*';
+                } else {
+                    line[2 * j] = (char) ('0' + getCell(j, i));
+                }
+                line[2 * j + 1] = ' ';
+            }
+            out.write(line);
+            out.write(System.lineSeparator());
+        }
+    }
+
+    /**
+     * writeBoard writes the mine layout of the board in the text format read
+     * by readBoard: a line with the width and height, then one line per row
+     * with "*" for a mine and "." for a safe square. Every row is built in one
+     * buffer and written in one call.
+     * 
+     * @param out where to write the board
+     * @throws IllegalStateException if the game is first-click-safe and its
+     *                               mines are not placed yet
+     */
+    public void writeBoard(Writer out) throws IOException {
+        checkPlaced();
+        out.write(width + " " + height + "\n");
+        char[] line = new char[width + 1];
+        line[width] = '\n';
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (isMine(j, i)) {
+                    line[j] = '*';
+                } else {
+                    line[j] = '.';
+                }
+            }
+            out.write(line);
+        }
+    }
+
+    /**
+     * readBoard builds a new game from a mine layout in the text format written
+     * by writeBoard. The number of mines is the number of "*" squares, and the
+     * game is played on a rectangle.
+     * 
+     * @param in where to read the board from
+     * @return a new game on the layout that was read
+     * @throws IOException if reading fails or the text is not a valid layout
+     */
+    public static Minesweeper readBoard(Reader in) throws IOException {
+        BufferedReader lines = new BufferedReader(in);
+        String header = lines.readLine();
+        if (header == null) {
+            throw new IOException("Missing board size");
+        }
+        String[] size = header.trim().split("\\s+");
+        int c;
+        int r;
+        try {
+            c = Integer.parseInt(size[0]);
+            r = Integer.parseInt(size[1]);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid board size: " + header);
+        }
+        if (size.length != 2 || c <= 0 || r <= 0) {
+            throw new IOException("Invalid board size: " + header);
+        }
+
+        // the backend depends on the number of mines, so they are placed once all are read
+        int[] mines = new int[0];
+        int count = 0;
+        for (int i = 0; i < r; i++) {
+            String line = lines.readLine();
+            if (line == null || line.length() != c) {
+                throw new IOException("Row " + i + " does not have " + c + " squares");
+            }
+            for (int j = 0; j < c; j++) {
+                char square = line.charAt(j);
+                if (square == '*') {
+                    if (count == mines.length) {
+                        mines = grow(mines);
+                    }
+                    mines[count] = i * c + j;
+                    count++;
+                } else if (square != '.') {
+                    throw new IOException("Unexpected '" + square + "' in row " + i);
+                }
+            }
+        }
+        Minesweeper game = new Minesweeper();
+        game.prepare(Topology.rectangle(c, r), count);
+        game.newBoard();
+        for (int i = 0; i < count; i++) {
+            game.placeMine(mines[i] % c, mines[i] / c);
+        }
+        game.buildOpenings(c, r);
+        return game;
+    }
+
+    /**
+     * numRevealed returns the number of revealed squares in the game.
+     * This is useful for add the number of changes per move and thus
+     * useful to our undo function.
+     * 
+     * @return number of revealed squares in the game
+     */
+    public int numRevealed() {
+        int count = safeRevealed + minesRevealed;
+        return count;
+    }
+
+    /**
+     * Undo's the last move by removing the last squares from undo
+     * and changing the correct cells in revealed to false. If a
+     * zero square is called for undo each square the zero had
+     * revealed is also changed to hidden with the use of
+     * the numChange array. Undo does not undo a flag from
+     * the user and only undos the move. A sparse flood fill is
+     * undone a run at a time.
+     */
+    public void undo() {
+        if (numRevealed() != 0) {
+            int n = numChange.pop();
+            for (int i = 0; i < n; i++) {
+                int last = undo.pop();
+                hide(last % width, last / width);
+            }
+            for (int i = 0; i < -n; i++) {
+                int end = undo.pop();
+                int start = undo.pop();
+                hideRun(undo.pop(), start, end);
+            }
+            checkWinner();
+        }
+    }
+
+    /**
+     * reset (re-)sets the game state to start a new game.
+     */
+    public void reset(int c, int r, int m, boolean fixed) {
+        if (fixed) {
+            generate(Topology.rectangle(c, r), m, null);
+            seed = 0;
+        } else {
+            reset(c, r, m, new Random().nextLong());
+        }
+    }
+
+    /**
+     * reset (re-)sets the game state to start a new game whose mines are placed
+     * from the given seed.
+     */
+    public void reset(int c, int r, int m, long seed) {
+        reset(Topology.rectangle(c, r), m, seed);
+    }
+
+    /**
+     * reset (re-)sets the game state to start a new game on the given topology
+     * whose mines are placed from the given seed.
+     */
+    public void reset(Topology t, int m, long seed) {
+        generate(t, m, new Random(seed));
+        this.seed = seed;
+    }
+
+    /**
+     * reset (re-)sets the game state to start a first-click-safe game. No mines
+     * are placed yet; they are placed when the first square is played, away
+     * from that square and its neighbors, so the game always starts with an
+     * opening. If the board is too crowded for that, only the square itself
+     * is kept clear. Until then getCell, writeBoard and openings throw an
+     * IllegalStateException, as there is no board to read yet.
+     */
+    public void resetFirstClickSafe(int c, int r, int m) {
+        resetFirstClickSafe(Topology.rectangle(c, r), m, new Random().nextLong());
+    }
+
+    /**
+     * reset (re-)sets the game state to start a first-click-safe game on the
+     * given topology whose mines will be placed from the given seed.
+     */
+    public void resetFirstClickSafe(Topology t, int m, long seed) {
+        int tempMines = m;
+        if (m > t.width() * t.height()) {
+            tempMines = t.width() * t.height();
+        }
+        prepare(t, tempMines);
+        pending = new Random(seed);
+        this.seed = seed;
+    }
+
+    /**
+     * generate is a helper function of reset that builds a new board. Mines are
+     * placed with the given random number generator, or row by row from the top
+     * left corner when it is null.
+     */
+    private void generate(Topology t, int m, Random random) {
+        prepare(t, m);
+        placeMines(random, -1, -1);
+        buildOpenings(width, height);
+    }
+
+    /**
+     * prepare is a helper function of reset that sets up an empty board of the
+     * given topology and clears the state of the previous game. The sparse
+     * backend is used for large boards with few mines.
+     */
+    private void prepare(Topology t, int m) {
+        long area = (long) t.width() * t.height();
+        prepare(t, m, area >= SPARSE_AREA && (long) m * SPARSE_DENSITY < area);
+    }
+
+    /**
+     * prepare is a helper function of reset that sets up an empty board of the
+     * given topology on the given backend and clears the state of the previous
+     * game. Squares are numbered by int flat indices, so a board may have at
+     * most Integer.MAX_VALUE squares.
+     * 
+     * @throws IllegalArgumentException if the board has more squares than that
+     */
+    private void prepare(Topology t, int m, boolean sparse) {
+        int c = t.width();
+        int r = t.height();
+        if ((long) c * r > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "A board of " + c + "x" + r + " has more than " + Integer.MAX_VALUE
+                            + " squares"
+            );
+        }
+        topology = t;
+        width = c;
+        height = r;
+        this.sparse = sparse;
+        revealed = null;
+        flagged = null;
+        hiddenAround = null;
+        frontierPos = null;
+        runs = null;
+        flagSet = null;
+        rowFlags = null;
+        frontierSet = null;
+        if (sparse) {
+            runs = new int[r][];
+            flagSet = new LongIntMap();
+            rowFlags = new int[r];
+            frontierSet = new LongIntMap();
+        } else {
+            revealed = new boolean[r][c];
+            flagged = new boolean[r][c];
+            hiddenAround = new byte[r][c];
+            for (int row = 0; row < r; row++) {
+                for (int col = 0; col < c; col++) {
+                    hiddenAround[row][col] = (byte) (t.neighbors(col, row).length / 2);
+                }
+            }
+            frontierPos = new int[r][c];
+        }
+        // the board is only allocated with its mines, which a first-click-safe game defers
+        board = null;
+        mineSet = null;
+        nonZero = null;
+        frontier = new int[0];
+        frontierSize = 0;
+        openingId = null;
+        openingStart = null;
+        openingCells = null;
+        openingFlags = null;
+        pending = null;
+
+        token = new Object();
+        gridOwner = token;
+        rowOwner = new Object[r];
+        for (int row = 0; row < r; row++) {
+            rowOwner[row] = token;
+        }
+        frontierOwner = token;
+
+        gameState = "Still Playing";
+        mines = m;
+        safeRevealed = 0;
+        minesRevealed = 0;
+        numFlags = 0;
+        undo = new IntStack();
+        numChange = new IntStack();
+    }
 
     /**
-     * Constructor sets up game state.
+     * newBoard is a helper function of placeMines and readBoard that gives the
+     * game a new board without mines. A board is never written once its mines
+     * are placed, so forks can share it.
      */
-    public Minesweeper(int c, int r, int m, boolean fixed) {
-        int tempMines = m;
-        if (m > c * r) {
-            tempMines = c * r;
+    private void newBoard() {
+        board = null;
+        mineSet = null;
+        if (sparse) {
+            mineSet = new LongIntMap();
+        } else {
+            board = new byte[height][width];
         }
-        reset(c, r, tempMines, fixed);
     }
 
     /**
-     * revealZero is a helper function of playTurn. This is called when a
-     * cell containing the value 0 (meaning no mines are around) is revealed.
-     * As a result, this method will reveal all nearby zeros around the original
-     * zero. This method uses recursion because all zero cells touching another
-     * should be revealed. The base case is that the square is not zero and in
-     * that case that square is revealed too and the recursion will end. If a square
-     * is flagged then the square will not be revealed.
+     * placeMines is a helper function of generate and playTurn that places the
+     * mines on a new board. They are placed with the given random number
+     * generator, or row by row from the top left corner when it is null.
+     * Randomly placed mines stay clear of the square at (c, r) and its
+     * neighbors when there is room for that, and of the square alone
+     * otherwise; a column of -1 keeps every square available.
      * 
-     * @param c column to play in
-     * @param r row to play in
+     * @param random random number generator, or null for a fixed board
+     * @param c      column of the square to keep clear
+     * @param r      row of the square to keep clear
      */
-    private void revealZero(int c, int r) {
-        if (!revealed[r][c] && board[r][c] == 0 && !flags.contains(new Point(c, r))) {
-            revealed[r][c] = true;
-            undo.addLast(new Point(c, r));
-            if (c - 1 >= 0) {
-                revealZero(c - 1, r);
+    private void placeMines(Random random, int c, int r) {
+        newBoard();
+        int[] d = new int[0];
+        if (c != -1) {
+            d = topology.neighbors(c, r);
+            if (mines > width * height - 1 - d.length / 2) {
+                d = new int[0];
             }
-            if (c + 1 < board[0].length) {
-                revealZero(c + 1, r);
+            if (mines > width * height - 1) {
+                c = -1;
             }
-            if (r - 1 >= 0) {
-                revealZero(c, r - 1);
-                if (c - 1 >= 0) {
-                    revealZero(c - 1, r - 1);
+        }
+
+        if (random != null) {
+            for (int i = 0; i < mines; i++) {
+                int x = random.nextInt(width);
+                int y = random.nextInt(height);
+                boolean clear = x == c && y == r;
+                for (int k = 0; k < d.length; k += 2) {
+                    clear = clear || (x == c + d[k] && y == r + d[k + 1]);
                 }
-                if (c + 1 < board[0].length) {
-                    revealZero(c + 1, r - 1);
+                if (isMine(x, y) || clear) {
+                    i -= 1;
+                } else {
+                    placeMine(x, y);
                 }
             }
-            if (r + 1 < board.length) {
-                revealZero(c, r + 1);
-                if (c - 1 >= 0) {
-                    revealZero(c - 1, r + 1);
-                }
-                if (c + 1 < board[0].length) {
-                    revealZero(c + 1, r + 1);
+        } else {
+            int i = 0;
+            int x = 0;
+            int y = 0;
+            while (i < mines) {
+                placeMine(y, x);
+                i++;
+                y++;
+                if (y >= width) {
+                    y = 0;
+                    x++;
                 }
             }
         }
-        if (!revealed[r][c] && board[r][c] != 0 && !flags.contains(new Point(c, r))) {
-            revealed[r][c] = true;
-            undo.addLast(new Point(c, r));
-        }
     }
 
     /**
-     * playTurn allows the player to play a turn. Returns true if the move is
-     * successful and false if a player tries to play in a location that is
-     * taken or after the game has ended.
-     *
-     * @param c column to play in
-     * @param r row to play in
-     * @return whether the turn was successful
+     * placeMine is a helper function of generate that puts a mine at (c, r) and
+     * adds one to the number of every square around it. Counting from the mines
+     * means the work of numbering a board grows with its mines instead of its
+     * area, which matters for large sparse boards. A square that later receives
+     * a mine simply loses its count. Sparse boards only remember the mine.
+     * 
+     * @param c column of the mine
+     * @param r row of the mine
      */
-    public boolean playTurn(int c, int r) {
-        if (!flags.contains(new Point(c, r))) {
-            if (board[r][c] == 0) {
-                int initial = numRevealed();
-                revealZero(c, r);
-                numChange.add(numRevealed() - initial);
-            } else if (gameState.equals("Still Playing")) {
-                revealed[r][c] = true;
-                undo.addLast(new Point(c, r));
-                numChange.add(1);
-                checkWinner();
-                return true;
+    private void placeMine(int c, int r) {
+        if (sparse) {
+            mineSet.put(r * width + c, 1);
+            return;
+        }
+        board[r][c] = -1;
+        int[] d = topology.neighbors(c, r);
+        for (int k = 0; k < d.length; k += 2) {
+            int x = c + d[k];
+            int y = r + d[k + 1];
+            if (board[y][x] != -1) {
+                board[y][x]++;
             }
         }
-        return false;
     }
 
     /**
-     * checkWinner checks whether the game has reached a win condition.
-     * checkWinner only looks for horizontal wins.
-     *
-     * @return "Still Playing" if the game is not finished, "Won" if the player won,
-     *         and
-     *         "Lost" if the player lost.
+     * buildOpenings is a helper function of reset that builds the opening index
+     * for the freshly generated board. Zero cells are joined with their zero
+     * neighbors in the board's topology using union-find, each resulting region
+     * is given an id, and the cells of every opening are laid out next to each
+     * other in openingCells.
+     * A numbered cell bordering several openings is listed once in each.
+     * Sparse boards have no opening index; nonZero is built for them instead.
+     * 
+     * @param c number of columns on the board
+     * @param r number of rows on the board
      */
-    public String checkWinner() {
-        int total = (board.length * board[0].length) - this.mines;
-        int moves = 0;
-        for (int i = 0; i < board.length; i++) {
-            if (!gameState.equals("Lost")) {
-                for (int j = 0; j < board[0].length; j++) {
-                    if (!gameState.equals("Lost")) {
-                        if (board[i][j] != -1 && revealed[i][j]) {
-                            moves++;
-                        }
-                        if (board[i][j] != -1 && !revealed[i][j]) {
-                            gameState = "Still Playing";
+    private void buildOpenings(int c, int r) {
+        if (sparse) {
+            openingId = null;
+            openingStart = null;
+            openingCells = null;
+            buildNonZero();
+            return;
+        }
+        int[] parent = new int[c * r];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (int row = 0; row < r; row++) {
+            for (int col = 0; col < c; col++) {
+                if (board[row][col] == 0) {
+                    int[] d = topology.neighbors(col, row);
+                    for (int k = 0; k < d.length; k += 2) {
+                        int x = col + d[k];
+                        int y = row + d[k + 1];
+                        if (board[y][x] == 0) {
+                            union(parent, row * c + col, y * c + x);
                         }
-                        if (board[i][j] == -1 && revealed[i][j]) {
-                            gameState = "Lost";
+                    }
+                }
+            }
+        }
+
+        openingId = new int[c * r];
+        int count = 0;
+        for (int i = 0; i < openingId.length; i++) {
+            openingId[i] = -1;
+        }
+        for (int i = 0; i < openingId.length; i++) {
+            if (board[i / c][i % c] == 0) {
+                int root = find(parent, i);
+                if (openingId[root] == -1) {
+                    openingId[root] = count;
+                    count++;
+                }
+                openingId[i] = openingId[root];
+            }
+        }
+
+        // the first pass counts the cells of each opening, the second one places them
+        openingStart = new int[count + 1];
+        int[] next = new int[count];
+        int[] ids = new int[8];
+        for (int pass = 0; pass < 2; pass++) {
+            for (int row = 0; row < r; row++) {
+                for (int col = 0; col < c; col++) {
+                    int n = openingsAround(col, row, ids);
+                    for (int k = 0; k < n; k++) {
+                        if (pass == 0) {
+                            openingStart[ids[k] + 1]++;
+                        } else {
+                            openingCells[next[ids[k]]] = row * c + col;
+                            next[ids[k]]++;
                         }
                     }
                 }
             }
+            if (pass == 0) {
+                for (int i = 0; i < count; i++) {
+                    openingStart[i + 1] += openingStart[i];
+                    next[i] = openingStart[i];
+                }
+                openingCells = new int[openingStart[count]];
+                openingFlags = new int[count];
+                openingFlagsOwner = token;
+            }
         }
-        if (total == moves) {
-            gameState = "Won";
+
+        // flags can already be down when a first-click-safe board is generated
+        for (int row = 0; row < r && numFlags > 0; row++) {
+            for (int col = 0; col < c; col++) {
+                if (flagged[row][col] && board[row][col] == 0) {
+                    openingFlags[openingId[row * c + col]]++;
+                }
+            }
         }
-        return gameState;
     }
 
     /**
-     * printGameState prints the grid of the board
-     * for debugging.
+     * buildNonZero is a helper function of buildOpenings that lists, for every
+     * row of a sparse board, the sorted columns of the mines and of the squares
+     * next to them. It takes time and memory for the mines only.
      */
-    public void printGameState() {
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[0].length; j++) {
-                if (revealed[i][j]) {
-                    if (board[i][j] == -1) {
-                        System.out.print("* ");
+    private void buildNonZero() {
+        long[] keys = mineSet.keys();
+        int[] count = new int[height];
+        for (int pass = 0; pass < 2; pass++) {
+            for (long key : keys) {
+                int col = (int) (key % width);
+                int row = (int) (key / width);
+                int[] d = topology.neighbors(col, row);
+                for (int k = -2; k < d.length; k += 2) {
+                    // k = -2 stands for the mine itself
+                    int x = col;
+                    int y = row;
+                    if (k >= 0) {
+                        x += d[k];
+                        y += d[k + 1];
+                    }
+                    if (pass == 0) {
+                        count[y]++;
                     } else {
-                        System.out.print(Integer.toString(board[i][j]) + " ");
+                        count[y]--;
+                        nonZero[y][count[y]] = x;
                     }
-                } else {
-                    System.out.print("# ");
                 }
             }
-            System.out.println();
+            if (pass == 0) {
+                nonZero = new int[height][];
+                for (int y = 0; y < height; y++) {
+                    nonZero[y] = new int[count[y]];
+                }
+            }
         }
-        System.out.println();
-    }
 
-    /**
-     * numRevealed returns the number of revealed squares in the game.
-     * This is useful for add the number of changes per move and thus
-     * useful to our undo function.
-     * 
-     * @return number of revealed squares in the game
-     */
-    public int numRevealed() {
-        int count = 0;
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[0].length; j++) {
-                if (revealed[i][j]) {
-                    count++;
+        // squares next to several mines were listed once per mine
+        for (int y = 0; y < height; y++) {
+            int[] columns = nonZero[y];
+            Arrays.sort(columns);
+            int n = 0;
+            for (int i = 0; i < columns.length; i++) {
+                if (n == 0 || columns[i] != columns[n - 1]) {
+                    columns[n] = columns[i];
+                    n++;
                 }
             }
+            if (n < columns.length) {
+                nonZero[y] = Arrays.copyOf(columns, n);
+            }
         }
-        return count;
     }
 
     /**
-     * Undo's the last move by removing the last element from undo
-     * and changing the correct cell in revealed to false. If a
-     * zero square is called for undo each square the zero had
-     * revealed is also changed to hidden with the use of
-     * the numChange ArrayList. Undo does not undo a flag from
-     * the user and only undos the move.
+     * openingsAround is a helper function of buildOpenings that finds which
+     * openings the cell at (c, r) belongs to. A zero cell belongs to its own
+     * opening and a numbered cell to every opening it borders.
+     * 
+     * @param c   column of the cell
+     * @param r   row of the cell
+     * @param ids array with room for one id per neighbor
+     * @return number of ids written
      */
-    public void undo() {
-        if (numRevealed() != 0) {
-            int end = numChange.size() - 1;
-            for (int i = 0; i < numChange.get(end); i++) {
-                Point last = undo.getLast();
-                undo.removeLast();
-                revealed[last.y][last.x] = false;
-
-                if (!checkWinner().equals("Still Playing")) {
-                    gameState = "Still Playing";
+    private int openingsAround(int c, int r, int[] ids) {
+        if (board[r][c] == 0) {
+            ids[0] = openingId[r * width + c];
+            return 1;
+        }
+        int n = 0;
+        if (board[r][c] != -1) {
+            int[] d = topology.neighbors(c, r);
+            for (int i = 0; i < d.length; i += 2) {
+                int x = c + d[i];
+                int y = r + d[i + 1];
+                if (board[y][x] == 0) {
+                    int id = openingId[y * width + x];
+                    boolean seen = false;
+                    for (int k = 0; k < n; k++) {
+                        seen = seen || ids[k] == id;
+                    }
+                    if (!seen) {
+                        ids[n] = id;
+                        n++;
+                    }
                 }
             }
-            numChange.remove(end);
         }
+        return n;
     }
 
     /**
-     * reset (re-)sets the game state to start a new game.
+     * find returns the representative of the union-find set holding i,
+     * halving the path to it along the way.
      */
-    public void reset(int c, int r, int m, boolean fixed) {
-        board = new int[r][c];
-        if (!fixed) {
-            for (int i = 0; i < m; i++) {
-                int x = (int) (Math.random() * c);
-                int y = (int) (Math.random() * r);
-                if (board[y][x] == -1) {
-                    i -= 1;
-                } else {
-                    board[y][x] = -1;
-                }
-            }
-        } else {
-            int i = 0;
-            int x = 0;
-            int y = 0;
-            while (i < m) {
-                board[x][y] = -1;
-                i++;
-                y++;
-                if (y >= board[0].length) {
-                    y = 0;
-                    x++;
-                }
-            }
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
         }
+        return i;
+    }
 
-        for (int row = 0; row < r; row++) {
-            for (int col = 0; col < c; col++) {
-                int value = 0;
-
-                for (int i = -1; i < 2; i++) {
-                    for (int j = -1; j < 2; j++) {
-                        int x = col + j;
-                        int y = row + i;
-                        if (x >= 0 && y >= 0 && x < c && y < r) {
-                            if (board[y][x] == -1) {
-                                value++;
-                            }
-                        }
-                    }
-                }
-                if (board[row][col] != -1) {
-                    board[row][col] = value;
-                }
-            }
-        }
+    /**
+     * union merges the union-find sets holding a and b.
+     */
+    private static void union(int[] parent, int a, int b) {
+        parent[find(parent, a)] = find(parent, b);
+    }
 
-        revealed = new boolean[r][c];
-        for (int row = 0; row < r; row++) {
-            for (int col = 0; col < c; col++) {
-                revealed[row][col] = false;
-            }
+    /**
+     * fork returns a copy of this game that can be played independently, for
+     * example to look ahead at a move without changing this game. It takes
+     * constant time whatever the size of the board: the copy shares the board
+     * and all per-square state with this game, and afterwards each game copies
+     * only the rows, undo chunks and frontier it changes, the first time it
+     * changes them.
+     * 
+     * @return a new game in the same state as this one
+     */
+    public Minesweeper fork() {
+        Minesweeper copy = new Minesweeper();
+        copy.board = board;
+        copy.revealed = revealed;
+        copy.flagged = flagged;
+        copy.hiddenAround = hiddenAround;
+        copy.frontierPos = frontierPos;
+        copy.rowOwner = rowOwner;
+        copy.gridOwner = gridOwner;
+        copy.frontier = frontier;
+        copy.frontierSize = frontierSize;
+        copy.frontierOwner = frontierOwner;
+        copy.openingId = openingId;
+        copy.openingStart = openingStart;
+        copy.openingCells = openingCells;
+        copy.openingFlags = openingFlags;
+        copy.openingFlagsOwner = openingFlagsOwner;
+        copy.sparse = sparse;
+        copy.mineSet = mineSet;
+        copy.nonZero = nonZero;
+        copy.runs = runs;
+        copy.flagSet = flagSet;
+        copy.rowFlags = rowFlags;
+        copy.frontierSet = frontierSet;
+        copy.undo = undo.fork();
+        copy.numChange = numChange.fork();
+        copy.gameState = gameState;
+        copy.safeRevealed = safeRevealed;
+        copy.minesRevealed = minesRevealed;
+        copy.numFlags = numFlags;
+        copy.width = width;
+        copy.height = height;
+        copy.mines = mines;
+        copy.topology = topology;
+        copy.seed = seed;
+        if (pending != null) {
+            // nothing has been drawn from pending yet, so a new one is identical
+            copy.pending = new Random(seed);
         }
 
-        gameState = "Still Playing";
-        mines = m;
-        width = c;
-        height = r;
-        flags = new LinkedList<Point>();
-        undo = new LinkedList<Point>();
-        numChange = new ArrayList<Integer>();
+        // neither game owns the shared state any more
+        copy.token = new Object();
+        token = new Object();
+        return copy;
     }
 
     /**
@@ -290,9 +1595,60 @@ public class Minesweeper {
      * @param r row to retrieve
      * @return an integer denoting the contents of the corresponding cell on the
      *         game board. 0 = empty, 1 = Player 1, 2 = Player 2
+     * @throws IllegalStateException if the game is first-click-safe and its
+     *                               mines are not placed yet
      */
     public int getCell(int c, int r) {
-        return board[r][c];
+        checkPlaced();
+        if (!sparse) {
+            return board[r][c];
+        }
+        if (isMine(c, r)) {
+            return -1;
+        }
+        int n = 0;
+        int[] d = topology.neighbors(c, r);
+        for (int k = 0; k < d.length; k += 2) {
+            if (isMine(c + d[k], r + d[k + 1])) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * checkPlaced is a helper function of the getters that need the mines. It
+     * throws if the game is first-click-safe and nothing has been played yet,
+     * since the board does not exist before the first move.
+     */
+    private void checkPlaced() {
+        if (pending != null) {
+            throw new IllegalStateException("The mines are placed on the first move");
+        }
+    }
+
+    /**
+     * nextToMine is a helper function that tells if any neighbor of (c, r) is a
+     * mine, stopping at the first one found.
+     */
+    private boolean nextToMine(int c, int r) {
+        int[] d = topology.neighbors(c, r);
+        for (int k = 0; k < d.length; k += 2) {
+            if (isMine(c + d[k], r + d[k + 1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * isMine is a helper function that tells if the square at (c, r) is a mine.
+     */
+    private boolean isMine(int c, int r) {
+        if (sparse) {
+            return mineSet.get(r * width + c) != 0;
+        }
+        return board[r][c] == -1;
     }
 
     /**
@@ -304,6 +1660,14 @@ public class Minesweeper {
      * @return boolean that tells wheter the cell is revealed or not
      */
     public boolean isCellRevealed(int c, int r) {
+        if (sparse) {
+            int[] row = runs[r];
+            if (row == null) {
+                return false;
+            }
+            int i = findRun(row, c);
+            return i >= 0 && c < row[2 * i + 2];
+        }
         return revealed[r][c];
     }
 
@@ -338,6 +1702,35 @@ public class Minesweeper {
         return h;
     }
 
+    /**
+     * getter for the seed the mines were placed from
+     * 
+     * @return long that represents the seed, or 0 for a fixed board
+     */
+    public long seed() {
+        long s = seed;
+        return s;
+    }
+
+    /**
+     * getter for the number of moves played and not undone
+     * 
+     * @return int that represents the number of moves
+     */
+    public int moves() {
+        int n = numChange.size();
+        return n;
+    }
+
+    /**
+     * getter for the topology of the board
+     * 
+     * @return Topology that tells which squares touch each other
+     */
+    public Topology topology() {
+        return topology;
+    }
+
     /**
      * getter for the number of mines on the board
      * 
@@ -348,6 +1741,118 @@ public class Minesweeper {
         return m;
     }
 
+    /**
+     * isSparse is a getter that tells if the board is kept in the sparse
+     * backend, which is chosen for large boards with few mines.
+     * 
+     * @return boolean that tells whether the board is sparse or not
+     */
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    /**
+     * getter for the number of openings on the board
+     * 
+     * @return int that represents the number of connected regions of zero cells
+     * @throws IllegalStateException if the game is first-click-safe and its
+     *                               mines are not placed yet
+     */
+    public int openings() {
+        checkPlaced();
+        if (sparse) {
+            return countOpenings();
+        }
+        int o = openingStart.length - 1;
+        return o;
+    }
+
+    /**
+     * countOpenings is a helper function of openings for sparse boards, which
+     * have no opening index. It flood fills every opening once, so it takes
+     * time and a bit of memory for every square of the board; it is meant for
+     * analyzing a board rather than for playing it.
+     */
+    private int countOpenings() {
+        BitSet seen = new BitSet(width * height);
+        int[] todo = new int[16];
+        int count = 0;
+        for (int i = 0; i < width * height; i++) {
+            if (!seen.get(i) && getCell(i % width, i / width) == 0) {
+                count++;
+                seen.set(i);
+                todo[0] = i;
+                int size = 1;
+                while (size > 0) {
+                    size--;
+                    int col = todo[size] % width;
+                    int row = todo[size] / width;
+                    int[] d = topology.neighbors(col, row);
+                    for (int k = 0; k < d.length; k += 2) {
+                        int x = col + d[k];
+                        int y = row + d[k + 1];
+                        if (!seen.get(y * width + x) && getCell(x, y) == 0) {
+                            seen.set(y * width + x);
+                            if (size == todo.length) {
+                                todo = grow(todo);
+                            }
+                            todo[size] = y * width + x;
+                            size++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * frontierSize is a getter for the number of squares on the frontier: the
+     * revealed numbered squares that still touch a hidden, unflagged square.
+     * 
+     * @return int that represents the number of frontier squares
+     */
+    public int frontierSize() {
+        return frontierSize;
+    }
+
+    /**
+     * frontierColumn is a getter for the column of a frontier square. The
+     * squares are numbered from 0 to frontierSize() - 1 in no particular order,
+     * and the numbering changes whenever the frontier does.
+     * 
+     * @param i number of the frontier square
+     * @return int that represents the column of the square
+     */
+    public int frontierColumn(int i) {
+        return frontier[i] % width;
+    }
+
+    /**
+     * frontierRow is a getter for the row of a frontier square, numbered as in
+     * frontierColumn.
+     * 
+     * @param i number of the frontier square
+     * @return int that represents the row of the square
+     */
+    public int frontierRow(int i) {
+        return frontier[i] / width;
+    }
+
+    /**
+     * isFrontier is a getter that tells if a square is on the frontier.
+     * 
+     * @param c column to retrieve
+     * @param r row to retrieve
+     * @return boolean that tells whether the square is on the frontier or not
+     */
+    public boolean isFrontier(int c, int r) {
+        if (sparse) {
+            return frontierSet.get(r * width + c) != 0;
+        }
+        return frontierPos[r][c] != 0;
+    }
+
     /**
      * flags is a getter function that returns all the squares that are flagged
      * 
@@ -355,12 +1860,38 @@ public class Minesweeper {
      */
     public LinkedList<Point> flags() {
         LinkedList<Point> copy = new LinkedList<Point>();
-        for (int i = 0; i < flags.size(); i++) {
-            copy.add(flags.get(i));
+        if (sparse) {
+            long[] keys = flagSet.keys();
+            Arrays.sort(keys);
+            for (long key : keys) {
+                copy.add(new Point((int) (key % width), (int) (key / width)));
+            }
+            return copy;
+        }
+        for (int i = 0; i < height && copy.size() < numFlags; i++) {
+            for (int j = 0; j < width; j++) {
+                if (flagged[i][j]) {
+                    copy.add(new Point(j, i));
+                }
+            }
         }
         return copy;
     }
 
+    /**
+     * isFlagged is a getter that tells if a square is flagged.
+     * 
+     * @param c column to retrieve
+     * @param r row to retrieve
+     * @return boolean that tells whether the square is flagged or not
+     */
+    public boolean isFlagged(int c, int r) {
+        if (sparse) {
+            return flagSet.get(r * width + c) != 0;
+        }
+        return flagged[r][c];
+    }
+
     /**
      * addFlag flags a square making it immune to playTurn
      * 
@@ -368,9 +1899,8 @@ public class Minesweeper {
      * @param r row of the square to be flagged
      */
     public void addFlag(int c, int r) {
-        if (!isCellRevealed(c, r)) {
-            Point p = new Point(c, r);
-            flags.add(p);
+        if (!isCellRevealed(c, r) && !isFlagged(c, r)) {
+            setFlag(c, r, true);
         }
     }
 
@@ -382,8 +1912,39 @@ public class Minesweeper {
      * @param r row of the square to be flagged
      */
     public void removeFlag(int c, int r) {
-        Point p = new Point(c, r);
-        flags.remove(p);
+        if (isFlagged(c, r)) {
+            setFlag(c, r, false);
+        }
+    }
+
+    /**
+     * setFlag is a helper function of addFlag and removeFlag that changes the
+     * flag of a square and keeps the flag counts in step.
+     */
+    private void setFlag(int c, int r, boolean flag) {
+        int change = 1;
+        if (!flag) {
+            change = -1;
+        }
+        own(r);
+        if (!sparse) {
+            flagged[r][c] = flag;
+        } else if (flag) {
+            flagSet.put(r * width + c, 1);
+            rowFlags[r]++;
+        } else {
+            flagSet.remove(r * width + c);
+            rowFlags[r]--;
+        }
+        numFlags += change;
+        coverChanged(c, r, -change);
+        if (!sparse && pending == null && board[r][c] == 0) {
+            if (openingFlagsOwner != token) {
+                openingFlags = openingFlags.clone();
+                openingFlagsOwner = token;
+            }
+            openingFlags[openingId[r * width + c]] += change;
+        }
     }
 
     /**
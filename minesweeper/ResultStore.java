@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/**
+ * ResultStore keeps the results of finished games in a local file so that
+ * best times and win rates survive between runs. GameBoard records every game
+ * played in the GUI. Several stores, in one program or in separate ones, can
+ * share a file, and each store is safe to use from several threads.
+ * 
+ * The file is append-only and made of fixed-size records, so a record is
+ * found by its number alone and a crash can at worst leave one partial record
+ * at the end, which is ignored and later overwritten. Records are written
+ * under a lock on the file at its current end, so stores sharing a file never
+ * overwrite each other. Each store sums the records up per board preset
+ * (width, height and mines), reading them through a memory-mapped view of
+ * the file: all of them when it is opened, and afterwards only the records
+ * other stores have added since. Queries then read those sums, so they take
+ * the same time however many games have been recorded.
+ */
+public class ResultStore {
+
+    /**
+     * Layout of a record: width, height, mines and moves as ints, then the
+     * seed and the duration in milliseconds as longs, then 1 for a win or 0
+     * for a loss, padded to RECORD_SIZE bytes.
+     */
+    public static final int RECORD_SIZE = 40;
+
+    // Largest part of the file mapped at once; a whole number of records
+    private static final long MAP_SIZE = (Integer.MAX_VALUE / RECORD_SIZE) * (long) RECORD_SIZE;
+
+    // File locks belong to the whole program, so stores in it take turns first
+    private static final Object LOCAL_LOCK = new Object();
+
+    private FileChannel file;
+    private long records;
+    private HashMap<Key, Preset> presets;
+
+    /**
+     * Preset holds the sums of the recorded games of one board preset.
+     */
+    private static class Preset {
+        private long games;
+        private long wins;
+        private long bestTime = -1;
+    }
+
+    /**
+     * Key identifies a board preset by its width, height and number of mines.
+     */
+    private static class Key {
+        private final int width;
+        private final int height;
+        private final int mines;
+
+        private Key(int w, int h, int m) {
+            width = w;
+            height = h;
+            mines = m;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return width == k.width && height == k.height && mines == k.mines;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * width + height) * 31 + mines;
+        }
+    }
+
+    /**
+     * Opens the store kept in the given file, creating the file if needed.
+     */
+    public ResultStore(Path path) throws IOException {
+        file = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        );
+        presets = new HashMap<Key, Preset>();
+        refresh();
+    }
+
+    /**
+     * refresh is a helper function that includes in the sums the records added
+     * to the file since this store last read it, by this store or any other.
+     * 
+     * @return the number of whole records now in the file
+     */
+    private synchronized long refresh() throws IOException {
+        long end = file.size() / RECORD_SIZE * RECORD_SIZE;
+        for (long start = records * RECORD_SIZE; start < end; start += MAP_SIZE) {
+            MappedByteBuffer map = file.map(
+                    FileChannel.MapMode.READ_ONLY, start, Math.min(MAP_SIZE, end - start)
+            );
+            for (int i = 0; i + RECORD_SIZE <= map.limit(); i += RECORD_SIZE) {
+                boolean won = map.get(i + 32) == 1;
+                long duration = map.getLong(i + 24);
+                count(map.getInt(i), map.getInt(i + 4), map.getInt(i + 8), duration, won);
+            }
+        }
+        records = end / RECORD_SIZE;
+        return records;
+    }
+
+    /**
+     * add records the result of a finished game.
+     * 
+     * @param game     the finished game
+     * @param duration how long the game took, in milliseconds
+     */
+    public void add(Minesweeper game, long duration) throws IOException {
+        add(game.width(), game.height(), game.mines(), game.moves(), game.seed(), duration,
+                game.getStatus().equals("Won"));
+    }
+
+    /**
+     * add records the result of a finished game from its parts.
+     */
+    public synchronized void add(int w, int h, int m, int moves, long seed, long duration,
+            boolean won) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putInt(w).putInt(h).putInt(m).putInt(moves);
+        record.putLong(seed).putLong(duration);
+        if (won) {
+            record.put((byte) 1);
+        } else {
+            record.put((byte) 0);
+        }
+        record.clear();
+
+        synchronized (LOCAL_LOCK) {
+            FileLock lock = file.lock();
+            try {
+                // other stores may have added records, and a partial one is overwritten
+                long position = refresh() * RECORD_SIZE;
+                while (record.hasRemaining()) {
+                    position += file.write(record, position);
+                }
+                records++;
+                count(w, h, m, duration, won);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * count is a helper function that includes one game in the sums of its
+     * preset.
+     */
+    private synchronized void count(int w, int h, int m, long duration, boolean won) {
+        Key key = new Key(w, h, m);
+        Preset p = presets.get(key);
+        if (p == null) {
+            p = new Preset();
+            presets.put(key, p);
+        }
+        p.games++;
+        if (won) {
+            p.wins++;
+            if (p.bestTime == -1 || duration < p.bestTime) {
+                p.bestTime = duration;
+            }
+        }
+    }
+
+    /**
+     * getter for the number of recorded games
+     * 
+     * @return long that represents the number of games in the store
+     */
+    public synchronized long size() throws IOException {
+        return refresh();
+    }
+
+    /**
+     * games returns how many games of the given preset were recorded.
+     */
+    public synchronized long games(int w, int h, int m) throws IOException {
+        refresh();
+        Preset p = presets.get(new Key(w, h, m));
+        if (p == null) {
+            return 0;
+        }
+        return p.games;
+    }
+
+    /**
+     * winRate returns the fraction of recorded games of the given preset that
+     * were won.
+     * 
+     * @return double from 0 to 1, or 0 if no game of the preset was recorded
+     */
+    public synchronized double winRate(int w, int h, int m) throws IOException {
+        refresh();
+        Preset p = presets.get(new Key(w, h, m));
+        if (p == null) {
+            return 0;
+        }
+        return (double) p.wins / p.games;
+    }
+
+    /**
+     * bestTime returns the shortest recorded win of the given preset.
+     * 
+     * @return long that represents the time in milliseconds, or -1 if no game
+     *         of the preset was won
+     */
+    public synchronized long bestTime(int w, int h, int m) throws IOException {
+        refresh();
+        Preset p = presets.get(new Key(w, h, m));
+        if (p == null) {
+            return -1;
+        }
+        return p.bestTime;
+    }
+
+    /**
+     * close closes the file of the store.
+     */
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+}
@@ -6,45 +6,49 @@ import javax.swing.*;
  * This class sets up the top-level frame and widgets for the GUI.
  */
 public class RunMinesweeper implements Runnable {
-    public void run() {
 
-        // Jframe that shows the instructions to the game
-        final JFrame instructions = new JFrame("Instructions");
-        JOptionPane.showMessageDialog(
-                instructions,
-                "Welcome to Minesweeper! To play Minesweeper, "
-                        + "left click squares to reveal them "
-                        + "and right click squares to mark them for mines. \n"
-                        + "A square can either hold a value telling how many "
-                        + "mines there are adjacent to the square "
-                        + "or it can hold a mine. Reveal all the non- \n"
-                        + "mine squares to win! If you click a mine you lose! "
-                        + "If you want to restart hit reset and if you want to "
-                        + "undo your move hit undo! \n Note undo does not remove "
-                        + "flags."
-        );
+    // Boards for the game; null until the size of the board is known
+    private BoardQueue boards;
 
-        // JFrame that asks for the desired width of the game board
-        final JFrame width = new JFrame("width");
-        int w = Integer.parseInt(
-                JOptionPane.showInputDialog(
-                        width, "Standard Minesweeper boards are: \n"
-                                + "Easy- 10x10 with 10 mines \n"
-                                + "Intermediate- 16x16 with 40 mines \n"
-                                + "Hard - 16x30 with 99 mines \n \n"
-                                + "Please enter your desired width."
-                )
-        );
+    /**
+     * Sets up a game whose board size is asked for with dialogs.
+     */
+    public RunMinesweeper() {
+    }
 
-        // JFrame that asks for the desired height of the game board
-        final JFrame height = new JFrame("height");
-        int h = Integer
-                .parseInt(JOptionPane.showInputDialog(height, "Please enter your desired height."));
+    /**
+     * Sets up a game from the command line, skipping the dialogs. The arguments
+     * are either a preset ("easy", "intermediate" or "hard") or the width,
+     * height and number of mines. Without arguments the dialogs are shown.
+     * Boards start being generated right away, before the window exists.
+     */
+    public RunMinesweeper(String[] args) {
+        if (args.length == 1) {
+            if (args[0].equalsIgnoreCase("easy")) {
+                boards = new BoardQueue(10, 10, 10);
+            } else if (args[0].equalsIgnoreCase("intermediate")) {
+                boards = new BoardQueue(16, 16, 40);
+            } else if (args[0].equalsIgnoreCase("hard")) {
+                boards = new BoardQueue(16, 30, 99);
+            } else {
+                throw new IllegalArgumentException("Unknown preset: " + args[0]);
+            }
+        } else if (args.length == 3) {
+            boards = new BoardQueue(
+                    Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                    Integer.parseInt(args[2])
+            );
+        } else if (args.length != 0) {
+            throw new IllegalArgumentException(
+                    "Expected a preset or a width, height and number of mines"
+            );
+        }
+    }
 
-        final JFrame mines = new JFrame("mines");
-        int m = Integer.parseInt(
-                JOptionPane.showInputDialog(mines, "Please enter your desired number of mines.")
-        );
+    public void run() {
+        if (boards == null) {
+            boards = askForBoards();
+        }
 
         // Top-level frame in which game components live
         final JFrame frame = new JFrame("Minesweeper");
@@ -57,7 +61,7 @@ public class RunMinesweeper implements Runnable {
         status_panel.add(status);
 
         // Game board
-        final GameBoard board = new GameBoard(status, w, h, m);
+        final GameBoard board = new GameBoard(status, boards);
         frame.add(board, BorderLayout.CENTER);
 
         // Reset button
@@ -92,4 +96,61 @@ public class RunMinesweeper implements Runnable {
         // Start the game
         board.reset();
     }
-}
\ No newline at end of file
+
+    /**
+     * askForBoards shows the instructions and asks for the size of the board
+     * and the number of mines with dialogs. Boards of the hard preset, the one
+     * most players pick, are generated while the dialogs are open, and are
+     * only thrown away if the answers ask for another size.
+     * 
+     * @return the boards for the chosen size, which start generating right away
+     */
+    private BoardQueue askForBoards() {
+        final BoardQueue guess = new BoardQueue(16, 30, 99);
+
+        // Jframe that shows the instructions to the game
+        final JFrame instructions = new JFrame("Instructions");
+        JOptionPane.showMessageDialog(
+                instructions,
+                "Welcome to Minesweeper! To play Minesweeper, "
+                        + "left click squares to reveal them "
+                        + "and right click squares to mark them for mines. \n"
+                        + "A square can either hold a value telling how many "
+                        + "mines there are adjacent to the square "
+                        + "or it can hold a mine. Reveal all the non- \n"
+                        + "mine squares to win! If you click a mine you lose! "
+                        + "If you want to restart hit reset and if you want to "
+                        + "undo your move hit undo! \n Note undo does not remove "
+                        + "flags."
+        );
+
+        // JFrame that asks for the desired width of the game board
+        final JFrame width = new JFrame("width");
+        int w = Integer.parseInt(
+                JOptionPane.showInputDialog(
+                        width, "Standard Minesweeper boards are: \n"
+                                + "Easy- 10x10 with 10 mines \n"
+                                + "Intermediate- 16x16 with 40 mines \n"
+                                + "Hard - 16x30 with 99 mines \n \n"
+                                + "Please enter your desired width."
+                )
+        );
+
+        // JFrame that asks for the desired height of the game board
+        final JFrame height = new JFrame("height");
+        int h = Integer
+                .parseInt(JOptionPane.showInputDialog(height, "Please enter your desired height."));
+
+        final JFrame mines = new JFrame("mines");
+        int m = Integer.parseInt(
+                JOptionPane.showInputDialog(mines, "Please enter your desired number of mines.")
+        );
+
+        if (w == guess.width() && h == guess.height() && m == guess.mines()) {
+            return guess;
+        }
+        guess.stop();
+        // boards are generated while the window is being built
+        return new BoardQueue(w, h, m);
+    }
+}
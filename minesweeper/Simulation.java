@@ -0,0 +1,274 @@
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulation plays batches of first-click-safe games with a simple bot on
+ * several worker threads, without any GUI. The bot plays every move the
+ * frontier proves safe, flags every square it proves to be a mine, and
+ * guesses a random hidden square when it is stuck.
+ * 
+ * The games of the first worker can be watched while the simulation runs. A
+ * viewer asks for a frame with latestFrame, and the worker answers after its
+ * next move by publishing a fork of its game, which takes constant time and
+ * is never changed afterwards. The workers never wait for the viewer or for
+ * each other; when nobody is watching the only cost is reading one flag per
+ * move.
+ */
+public class Simulation {
+
+    private int width;
+    private int height;
+    private int mines;
+    private long seed;
+    private Thread[] workers;
+    private volatile boolean running;
+
+    // Totals over all workers
+    private LongAdder games = new LongAdder();
+    private LongAdder wins = new LongAdder();
+
+    // Latest snapshot of the watched game, and whether a viewer wants a new one
+    private AtomicReference<Minesweeper> frame = new AtomicReference<Minesweeper>();
+    private AtomicBoolean frameWanted = new AtomicBoolean();
+
+    /**
+     * Sets up a simulation of games with the given parameters on the given
+     * number of worker threads. Worker i plays its games from seeds drawn from
+     * seed + i, so a run can be repeated.
+     */
+    public Simulation(int c, int r, int m, int threads, long seed) {
+        width = c;
+        height = r;
+        mines = m;
+        this.seed = seed;
+        workers = new Thread[threads];
+    }
+
+    /**
+     * start starts the worker threads. They keep playing until stop is called.
+     */
+    public void start() {
+        running = true;
+        for (int i = 0; i < workers.length; i++) {
+            final int worker = i;
+            workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    work(worker);
+                }
+            }, "Minesweeper simulation " + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * stop stops the worker threads after their current game and waits for
+     * them to finish.
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread t : workers) {
+            t.join();
+        }
+    }
+
+    /**
+     * work is the loop of one worker thread.
+     */
+    private void work(int worker) {
+        Random random = new Random(seed + worker);
+        Topology t = Topology.rectangle(width, height);
+        Minesweeper game = new Minesweeper(t, 0, 0);
+        boolean watched = worker == 0;
+        while (running) {
+            game.resetFirstClickSafe(t, mines, random.nextLong());
+            game.playTurn(random.nextInt(width), random.nextInt(height));
+            while (game.getStatus().equals("Still Playing")) {
+                if (!solveStep(game, t)) {
+                    guess(game, random);
+                }
+                if (watched && frameWanted.get()) {
+                    frameWanted.set(false);
+                    frame.set(game.fork());
+                }
+            }
+            games.increment();
+            if (game.getStatus().equals("Won")) {
+                wins.increment();
+            }
+        }
+    }
+
+    /**
+     * solveStep makes one move that the frontier proves correct: around a
+     * frontier square whose number is already matched by flags every hidden
+     * square is safe, and around one whose number equals its flags plus its
+     * hidden squares every hidden square is a mine.
+     * 
+     * @return whether a move was found
+     */
+    private static boolean solveStep(Minesweeper game, Topology t) {
+        for (int i = 0; i < game.frontierSize(); i++) {
+            int c = game.frontierColumn(i);
+            int r = game.frontierRow(i);
+            int[] d = t.neighbors(c, r);
+            int hidden = 0;
+            int flags = 0;
+            for (int k = 0; k < d.length; k += 2) {
+                if (game.isFlagged(c + d[k], r + d[k + 1])) {
+                    flags++;
+                } else if (!game.isCellRevealed(c + d[k], r + d[k + 1])) {
+                    hidden++;
+                }
+            }
+
+            int n = game.getCell(c, r);
+            if (hidden > 0 && (n == flags || n == flags + hidden)) {
+                for (int k = 0; k < d.length; k += 2) {
+                    int x = c + d[k];
+                    int y = r + d[k + 1];
+                    if (!game.isFlagged(x, y) && !game.isCellRevealed(x, y)
+                            && game.getStatus().equals("Still Playing")) {
+                        if (n == flags) {
+                            game.playTurn(x, y);
+                        } else {
+                            game.addFlag(x, y);
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * guess plays a random hidden square that is not flagged.
+     */
+    private static void guess(Minesweeper game, Random random) {
+        while (true) {
+            int c = random.nextInt(game.width());
+            int r = random.nextInt(game.height());
+            if (!game.isFlagged(c, r) && !game.isCellRevealed(c, r)) {
+                game.playTurn(c, r);
+                return;
+            }
+        }
+    }
+
+    /**
+     * latestFrame returns the latest snapshot of the watched game and asks for
+     * a newer one. Snapshots are never changed, so they can be read from any
+     * thread.
+     * 
+     * @return the latest snapshot, or null if none was published yet
+     */
+    public Minesweeper latestFrame() {
+        frameWanted.set(true);
+        return frame.get();
+    }
+
+    /**
+     * getter for the number of games finished so far
+     * 
+     * @return long that represents the number of finished games
+     */
+    public long games() {
+        return games.sum();
+    }
+
+    /**
+     * getter for the number of games won so far
+     * 
+     * @return long that represents the number of won games
+     */
+    public long wins() {
+        return wins.sum();
+    }
+
+    /**
+     * getter for the width of the simulated boards
+     * 
+     * @return int that represents the width of the boards
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * getter for the height of the simulated boards
+     * 
+     * @return int that represents the height of the boards
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Runs a simulation without a window and prints its throughput and win
+     * rate. The arguments are the width, height and number of mines, then
+     * optionally the number of worker threads and the number of seconds to run.
+     * A sixth argument "compare" runs the simulation unwatched and then watched
+     * by a thread asking for a frame 30 times a second like SimulationView, and
+     * prints both, so the cost of watching can be measured.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int c = Integer.parseInt(args[0]);
+        int r = Integer.parseInt(args[1]);
+        int m = Integer.parseInt(args[2]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        int seconds = 10;
+        if (args.length > 3) {
+            threads = Integer.parseInt(args[3]);
+        }
+        if (args.length > 4) {
+            seconds = Integer.parseInt(args[4]);
+        }
+
+        if (args.length > 5 && args[5].equals("compare")) {
+            // the first run also compiles the hot code, so it is not compared
+            measure(c, r, m, threads, seconds, false);
+            System.out.println("unwatched: " + measure(c, r, m, threads, seconds, false));
+            System.out.println("watched:   " + measure(c, r, m, threads, seconds, true));
+        } else {
+            System.out.println(measure(c, r, m, threads, seconds, false));
+        }
+    }
+
+    /**
+     * measure is a helper function of main that runs one simulation for the
+     * given number of seconds, optionally with a viewer asking for frames.
+     * 
+     * @return a line describing the throughput and win rate of the run
+     */
+    private static String measure(int c, int r, int m, int threads, int seconds, boolean watched)
+            throws InterruptedException {
+        final Simulation sim = new Simulation(c, r, m, threads, 0);
+        Thread viewer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while (true) {
+                        sim.latestFrame();
+                        Thread.sleep(1000 / 30);
+                    }
+                } catch (InterruptedException e) {
+                    // the run is over
+                }
+            }
+        }, "Minesweeper simulation viewer");
+        viewer.setDaemon(true);
+
+        sim.start();
+        if (watched) {
+            viewer.start();
+        }
+        Thread.sleep(seconds * 1000L);
+        viewer.interrupt();
+        sim.stop();
+
+        return sim.games() + " games, " + sim.games() / seconds + " games/s, win rate "
+                + 100.0 * sim.wins() / sim.games() + "%";
+    }
+}
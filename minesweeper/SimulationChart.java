@@ -0,0 +1,91 @@
+import java.awt.*;
+import javax.swing.*;
+
+/**
+ * SimulationChart draws the recent throughput and win rate of a simulation as
+ * two lines. It keeps the last SAMPLES samples in ring buffers, so adding a
+ * sample never allocates.
+ */
+@SuppressWarnings("serial")
+public class SimulationChart extends JPanel {
+
+    public static final int SAMPLES = 120;
+    public static final int CHART_WIDTH = 700;
+    public static final int CHART_HEIGHT = 150;
+
+    private double[] rate = new double[SAMPLES]; // games per second
+    private double[] winRate = new double[SAMPLES]; // from 0 to 1
+    private int next; // index of the next sample in the buffers
+    private int size; // number of samples in the buffers
+    private double maxRate;
+
+    /**
+     * Initializes an empty chart.
+     */
+    public SimulationChart() {
+        setBorder(BorderFactory.createLineBorder(Color.BLACK));
+    }
+
+    /**
+     * add adds a sample to the chart, dropping the oldest one when it is full.
+     * 
+     * @param gamesPerSecond games finished per second since the last sample
+     * @param won            fraction of the games won, from 0 to 1
+     */
+    public void add(double gamesPerSecond, double won) {
+        rate[next] = gamesPerSecond;
+        winRate[next] = won;
+        next = (next + 1) % SAMPLES;
+        if (size < SAMPLES) {
+            size++;
+        }
+
+        maxRate = 0;
+        for (int i = 0; i < size; i++) {
+            maxRate = Math.max(maxRate, rate[i]);
+        }
+        repaint();
+    }
+
+    /**
+     * Draws the throughput in blue, scaled to its largest recent value, and the
+     * win rate in green, scaled from 0 to 100%.
+     */
+    @Override
+    public void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        g.setColor(Color.blue);
+        g.drawString(String.format("games/s (max %.0f)", maxRate), 5, 15);
+        if (maxRate > 0) {
+            drawLine(g, rate, maxRate);
+        }
+        g.setColor(Color.green.darker());
+        g.drawString("win rate", 5, 30);
+        drawLine(g, winRate, 1);
+    }
+
+    /**
+     * drawLine is a helper function of paintComponent that draws the samples
+     * in the given buffer from oldest to newest.
+     */
+    private void drawLine(Graphics g, double[] samples, double max) {
+        int oldest = (next - size + SAMPLES) % SAMPLES;
+        int step = CHART_WIDTH / (SAMPLES - 1);
+        for (int i = 1; i < size; i++) {
+            double from = samples[(oldest + i - 1) % SAMPLES];
+            double to = samples[(oldest + i) % SAMPLES];
+            g.drawLine(
+                    step * (i - 1), (int) (CHART_HEIGHT * (1 - from / max)), step * i,
+                    (int) (CHART_HEIGHT * (1 - to / max))
+            );
+        }
+    }
+
+    /**
+     * Returns the size of the chart.
+     */
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(CHART_WIDTH, CHART_HEIGHT);
+    }
+}
@@ -0,0 +1,102 @@
+import java.awt.*;
+import java.awt.event.*;
+import javax.swing.*;
+
+/**
+ * SimulationView is a window to watch a running Simulation. It shows one of
+ * the simulated games as it is played, drawn by a GameBoard, with charts of
+ * the throughput and win rate below it.
+ * 
+ * The window is refreshed by a Swing timer at FPS frames per second. Each tick
+ * only takes the latest snapshot published by the simulation, so the workers
+ * never wait for the window, and a slow repaint only means fewer frames.
+ */
+public class SimulationView implements Runnable {
+
+    public static final int FPS = 30;
+
+    private Simulation sim;
+    private Timer timer;
+
+    // Totals at the last chart sample
+    private long lastGames;
+    private long lastWins;
+    private long lastTime;
+
+    public SimulationView(Simulation sim) {
+        this.sim = sim;
+    }
+
+    public void run() {
+        final JFrame frame = new JFrame("Minesweeper Simulation");
+        frame.setLocation(300, 0);
+
+        final JLabel status = new JLabel("Starting");
+        final JPanel status_panel = new JPanel();
+        status_panel.add(status);
+        frame.add(status_panel, BorderLayout.NORTH);
+
+        // Shows an empty board until the first snapshot arrives
+        final GameBoard board = new GameBoard(new Minesweeper(sim.width(), sim.height(), 0, true));
+        frame.add(board, BorderLayout.CENTER);
+
+        final SimulationChart chart = new SimulationChart();
+        frame.add(chart, BorderLayout.SOUTH);
+
+        lastTime = System.nanoTime();
+        timer = new Timer(1000 / FPS, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                Minesweeper game = sim.latestFrame();
+                if (game != null) {
+                    board.display(game);
+                }
+
+                long now = System.nanoTime();
+                if (now - lastTime >= 1000000000L) {
+                    long games = sim.games();
+                    long wins = sim.wins();
+                    double seconds = (now - lastTime) / 1e9;
+                    double won = 0;
+                    if (games > lastGames) {
+                        won = (double) (wins - lastWins) / (games - lastGames);
+                    }
+                    chart.add((games - lastGames) / seconds, won);
+                    status.setText(games + " games played, " + wins + " won");
+
+                    lastGames = games;
+                    lastWins = wins;
+                    lastTime = now;
+                }
+            }
+        });
+        timer.start();
+
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                timer.stop();
+            }
+        });
+
+        frame.pack();
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.setVisible(true);
+    }
+
+    /**
+     * Starts a simulation and watches it. The arguments are the width, height
+     * and number of mines, then optionally the number of worker threads.
+     */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 3) {
+            threads = Integer.parseInt(args[3]);
+        }
+        Simulation sim = new Simulation(
+                Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), threads, System.nanoTime()
+        );
+        sim.start();
+        SwingUtilities.invokeLater(new SimulationView(sim));
+    }
+}
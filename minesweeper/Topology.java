@@ -0,0 +1,193 @@
+/**
+ * Topology describes which squares of a board are neighbors of each other.
+ * The classic game is played on a rectangle, where a square touches the eight
+ * squares around it. A torus wraps the rectangle around both edges so every
+ * square has eight neighbors, and a hex board shifts every odd row half a
+ * square to the right so every square touches six others.
+ * 
+ * Neighbors are handed out as tables of column and row offsets. Squares in the
+ * same kind of position (a corner, an edge, the middle of the board, and for
+ * hex boards the parity of the row) share one table, so the tables are built
+ * once per board and loops over neighbors never have to check the edges.
+ */
+public class Topology {
+
+    // row kinds: first row, middle even row, middle odd row, last row
+    private static final int ROW_KINDS = 4;
+    // column kinds: first column, middle column, last column
+    private static final int COL_KINDS = 3;
+
+    private String name;
+    private int width;
+    private int height;
+    private boolean wrap;
+    private boolean hex;
+
+    /**
+     * tables[rowKind * COL_KINDS + colKind] holds the offsets of the neighbors
+     * of every square of that kind as {dc0, dr0, dc1, dr1, ...}.
+     */
+    private int[][] tables;
+
+    private Topology(String name, int c, int r, boolean wrap, boolean hex) {
+        this.name = name;
+        this.width = c;
+        this.height = r;
+        this.wrap = wrap;
+        this.hex = hex;
+
+        tables = new int[ROW_KINDS * COL_KINDS][];
+        int[] rows = { 0, 2, 1, r - 1 };
+        int[] cols = { 0, 1, c - 1 };
+        for (int i = 0; i < ROW_KINDS; i++) {
+            for (int j = 0; j < COL_KINDS; j++) {
+                // a kind without any square on this board keeps an empty table
+                if (rows[i] < r && cols[j] < c && rowKind(rows[i]) == i && colKind(cols[j]) == j) {
+                    tables[i * COL_KINDS + j] = buildTable(cols[j], rows[i]);
+                } else {
+                    tables[i * COL_KINDS + j] = new int[0];
+                }
+            }
+        }
+    }
+
+    /**
+     * rectangle returns the topology of the classic game.
+     */
+    public static Topology rectangle(int c, int r) {
+        return new Topology("Rectangle", c, r, false, false);
+    }
+
+    /**
+     * torus returns a rectangle whose left edge touches its right edge and
+     * whose top edge touches its bottom edge.
+     */
+    public static Topology torus(int c, int r) {
+        return new Topology("Torus", c, r, true, false);
+    }
+
+    /**
+     * hex returns a board of hexagons in which every odd row is shifted half a
+     * square to the right.
+     */
+    public static Topology hex(int c, int r) {
+        return new Topology("Hex", c, r, false, true);
+    }
+
+    /**
+     * buildTable is a helper function of the constructor that lists the
+     * neighbors of the square at (c, r) as offsets from it.
+     */
+    private int[] buildTable(int c, int r) {
+        int[] candidates;
+        if (!hex) {
+            candidates = new int[] { -1, -1, 0, -1, 1, -1, -1, 0, 1, 0, -1, 1, 0, 1, 1, 1 };
+        } else if (r % 2 == 0) {
+            candidates = new int[] { -1, -1, 0, -1, -1, 0, 1, 0, -1, 1, 0, 1 };
+        } else {
+            candidates = new int[] { 0, -1, 1, -1, -1, 0, 1, 0, 0, 1, 1, 1 };
+        }
+
+        int[] table = new int[candidates.length];
+        int n = 0;
+        for (int k = 0; k < candidates.length; k += 2) {
+            int x = c + candidates[k];
+            int y = r + candidates[k + 1];
+            if (wrap) {
+                x = (x + width) % width;
+                y = (y + height) % height;
+            }
+            boolean seen = x == c && y == r;
+            for (int i = 0; i < n; i += 2) {
+                seen = seen || (c + table[i] == x && r + table[i + 1] == y);
+            }
+            if (!seen && x >= 0 && y >= 0 && x < width && y < height) {
+                table[n] = x - c;
+                table[n + 1] = y - r;
+                n += 2;
+            }
+        }
+
+        int[] trimmed = new int[n];
+        System.arraycopy(table, 0, trimmed, 0, n);
+        return trimmed;
+    }
+
+    private int rowKind(int r) {
+        if (r == 0) {
+            return 0;
+        } else if (r == height - 1) {
+            return 3;
+        }
+        return 1 + r % 2;
+    }
+
+    private int colKind(int c) {
+        if (c == 0) {
+            return 0;
+        } else if (c == width - 1) {
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * neighbors returns the offsets of the neighbors of the square at (c, r) as
+     * {dc0, dr0, dc1, dr1, ...}. Adding an offset to (c, r) always lands on the
+     * board. The returned array is shared and must not be modified.
+     * 
+     * @param c column of the square
+     * @param r row of the square
+     * @return table of column and row offsets
+     */
+    public int[] neighbors(int c, int r) {
+        return tables[rowKind(r) * COL_KINDS + colKind(c)];
+    }
+
+    /**
+     * getter for the name of the topology
+     * 
+     * @return "Rectangle", "Torus" or "Hex"
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * wraps is a getter that tells if the board wraps around its edges, so
+     * squares on opposite edges touch each other.
+     * 
+     * @return boolean that tells whether the board wraps around or not
+     */
+    public boolean wraps() {
+        return wrap;
+    }
+
+    /**
+     * isHex is a getter that tells if the board is made of hexagons, with the
+     * odd rows shifted half a square to the right.
+     * 
+     * @return boolean that tells whether the board is hex or not
+     */
+    public boolean isHex() {
+        return hex;
+    }
+
+    /**
+     * getter for the width of the board
+     * 
+     * @return int that represents the width of the board
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * getter for the height of the board
+     * 
+     * @return int that represents the height of the board
+     */
+    public int height() {
+        return height;
+    }
+}
@@ -1,3 +1,10 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -231,4 +238,711 @@ public class GameTest {
         m.undo();
         assertEquals("Still Playing", m.checkWinner());
     }
+
+    @Test
+    public void testOpeningCount() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        assertEquals(1, m.openings());
+    }
+
+    @Test
+    public void testOpeningCountOnEmptyAndFullBoards() {
+        Minesweeper m = new Minesweeper(9, 9, 0, true);
+        assertEquals(1, m.openings());
+
+        m.reset(9, 9, 81, true);
+        assertEquals(0, m.openings());
+    }
+
+    @Test
+    public void testPlayTurnOnZeroSkipsFlagedBorderSquare() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.addFlag(0, 1);
+        m.playTurn(0, 2);
+        assertFalse(m.isCellRevealed(0, 1));
+        assertEquals(77, m.numRevealed());
+    }
+
+    @Test
+    public void testPlayTurnOnZeroAroundFlagedZeroSquare() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.addFlag(5, 5);
+        m.playTurn(0, 2);
+        assertFalse(m.isCellRevealed(5, 5));
+        assertEquals(77, m.numRevealed());
+
+        m.undo();
+        assertEquals(0, m.numRevealed());
+    }
+
+    @Test
+    public void testSameSeedGivesSameBoard() {
+        Minesweeper a = new Minesweeper(16, 30, 99, 42L);
+        Minesweeper b = new Minesweeper(16, 30, 99, 42L);
+        for (int i = 0; i < 16; i++) {
+            for (int j = 0; j < 30; j++) {
+                assertEquals(a.getCell(i, j), b.getCell(i, j));
+            }
+        }
+
+        b.reset(16, 30, 99, 42L);
+        assertEquals(a.getCell(5, 5), b.getCell(5, 5));
+    }
+
+    @Test
+    public void testSeededBoardHasAllMines() {
+        Minesweeper m = new Minesweeper(16, 30, 99, 7L);
+        int count = 0;
+        for (int i = 0; i < 16; i++) {
+            for (int j = 0; j < 30; j++) {
+                if (m.getCell(i, j) == -1) {
+                    count++;
+                }
+            }
+        }
+        assertEquals(99, count);
+    }
+
+    @Test
+    public void testBoardAnalysis() {
+        BoardAnalysis a = new BoardAnalysis(new Minesweeper(9, 9, 3, true));
+        assertEquals(1, a.threeBV());
+        assertEquals(1, a.openings());
+        assertEquals(0, a.islands());
+        assertEquals(73, a.numbers(0));
+        assertEquals(2, a.numbers(1));
+        assertEquals(2, a.numbers(2));
+        assertEquals(1, a.numbers(3));
+
+        // the mines fill three squares of the top left tile; the last row and column are cut off
+        assertEquals(3, a.density(0));
+        assertEquals(1, a.density(3));
+    }
+
+    @Test
+    public void testBoardAnalysisWithIsland() {
+        BoardAnalysis a = new BoardAnalysis(new Minesweeper(2, 1, 1, true));
+        assertEquals(1, a.threeBV());
+        assertEquals(0, a.openings());
+        assertEquals(1, a.islands());
+    }
+
+    @Test
+    public void testAnalysisReport() {
+        AnalysisReport report = AnalysisReport.generate(9, 9, 10, 0, 50);
+        assertEquals(50, report.boards());
+        long squares = 0;
+        for (int i = 0; i < 9; i++) {
+            squares += report.numbers(i);
+        }
+        assertEquals(50 * 71, squares);
+        assertTrue(report.minThreeBV() <= report.averageThreeBV());
+        assertTrue(report.averageThreeBV() <= report.maxThreeBV());
+
+        long tiles = 0;
+        long mines = 0;
+        for (int k = 0; k <= 16; k++) {
+            tiles += report.density(k);
+            mines += k * report.density(k);
+        }
+        assertEquals(50 * 4, tiles);
+        assertTrue(mines <= 50 * 10);
+    }
+
+    @Test
+    public void testEmptyAnalysisReport() {
+        AnalysisReport report = AnalysisReport.generate(9, 9, 10, 0, 0);
+        assertEquals(0, report.boards());
+        assertEquals(0, report.minThreeBV());
+        assertEquals(0, report.maxThreeBV());
+        assertTrue(report.toString().contains("min 0, max 0"));
+    }
+
+    @Test
+    public void testAnalysisReportOfUnsizedStream() {
+        // iterate has no known size, like boards read from files
+        int count = 3 * AnalysisReport.CHUNK_PER_CORE * Runtime.getRuntime().availableProcessors()
+                + 5;
+        AnalysisReport report = AnalysisReport.analyze(
+                Stream.iterate(0L, i -> i + 1).limit(count).map(i -> new Minesweeper(9, 9, 10, i))
+        );
+        AnalysisReport expected = AnalysisReport.generate(9, 9, 10, 0, count);
+        assertEquals(count, report.boards());
+        assertEquals(expected.averageThreeBV(), report.averageThreeBV(), 1e-9);
+        assertEquals(expected.minThreeBV(), report.minThreeBV());
+        assertEquals(expected.maxThreeBV(), report.maxThreeBV());
+        for (int i = 0; i < 9; i++) {
+            assertEquals(expected.numbers(i), report.numbers(i));
+        }
+        for (int k = 0; k <= 16; k++) {
+            assertEquals(expected.density(k), report.density(k));
+        }
+    }
+
+    @Test
+    public void testRectangleNeighbors() {
+        Topology t = Topology.rectangle(9, 9);
+        assertEquals(6, t.neighbors(0, 0).length);
+        assertEquals(10, t.neighbors(4, 0).length);
+        assertEquals(16, t.neighbors(4, 4).length);
+        assertEquals(6, t.neighbors(8, 8).length);
+    }
+
+    @Test
+    public void testTorusNeighbors() {
+        Topology t = Topology.torus(9, 9);
+        int[] d = t.neighbors(0, 0);
+        assertEquals(16, d.length);
+        for (int k = 0; k < d.length; k += 2) {
+            assertTrue(d[k] >= 0 && d[k] < 9);
+            assertTrue(d[k + 1] >= 0 && d[k + 1] < 9);
+        }
+    }
+
+    @Test
+    public void testHexNeighbors() {
+        Topology t = Topology.hex(9, 9);
+        assertEquals(12, t.neighbors(4, 4).length);
+        assertEquals(12, t.neighbors(4, 5).length);
+        assertEquals(4, t.neighbors(0, 0).length);
+        assertEquals(10, t.neighbors(0, 1).length);
+    }
+
+    @Test
+    public void testTorusBoardValues() {
+        Minesweeper m = new Minesweeper(Topology.torus(9, 9), 1, 0);
+        int count = 0;
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                count += m.getCell(i, j);
+            }
+        }
+        assertEquals(8 - 1, count);
+    }
+
+    @Test
+    public void testPlayTurnOnTorusWrapsAround() {
+        Minesweeper m = new Minesweeper(Topology.torus(9, 9), 0, 0);
+        m.addFlag(4, 4);
+        m.playTurn(0, 0);
+        assertEquals(80, m.numRevealed());
+        assertFalse(m.isCellRevealed(4, 4));
+    }
+
+    @Test
+    public void testIsFlagged() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.addFlag(0, 1);
+        m.addFlag(0, 1);
+        assertTrue(m.isFlagged(0, 1));
+        assertEquals(1, m.flags().size());
+
+        m.removeFlag(0, 1);
+        assertFalse(m.isFlagged(0, 1));
+        assertEquals(0, m.flags().size());
+    }
+
+    @Test
+    public void testCannotFlagRevealedSquare() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.playTurn(0, 1);
+        m.addFlag(0, 1);
+        assertFalse(m.isFlagged(0, 1));
+    }
+
+    @Test
+    public void testBoardQueueGivesNewGames() {
+        BoardQueue boards = new BoardQueue(16, 30, 99);
+        Minesweeper a = boards.next();
+        Minesweeper b = boards.next();
+        boards.stop();
+        Minesweeper c = boards.next();
+
+        assertNotSame(a, b);
+        assertEquals(16, c.width());
+        assertEquals(30, c.height());
+        assertEquals(99, c.mines());
+        assertEquals(0, b.numRevealed());
+        assertEquals("Still Playing", b.getStatus());
+    }
+
+    @Test
+    public void testFirstClickSafeStartsWithAnOpening() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        for (int seed = 0; seed < 100; seed++) {
+            m.resetFirstClickSafe(Topology.rectangle(16, 30), 99, seed);
+            assertFalse(m.isCellRevealed(3, 3));
+            m.playTurn(3, 3);
+            assertEquals(0, m.getCell(3, 3));
+            assertEquals("Still Playing", m.checkWinner());
+            assertTrue(m.numRevealed() > 1);
+        }
+    }
+
+    @Test
+    public void testFirstClickSafePlacesAllMines() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.resetFirstClickSafe(9, 9, 10);
+        m.playTurn(0, 0);
+        int count = 0;
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                if (m.getCell(i, j) == -1) {
+                    count++;
+                }
+            }
+        }
+        assertEquals(10, count);
+    }
+
+    @Test
+    public void testFirstClickSafeOnCrowdedBoard() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.resetFirstClickSafe(Topology.rectangle(9, 9), 80, 1);
+        m.playTurn(4, 4);
+        assertEquals(8, m.getCell(4, 4));
+        assertEquals("Won", m.checkWinner());
+    }
+
+    @Test
+    public void testFirstClickSafeKeepsEarlyFlags() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.resetFirstClickSafe(Topology.rectangle(9, 9), 0, 1);
+        m.addFlag(5, 5);
+        m.playTurn(0, 0);
+        assertEquals(80, m.numRevealed());
+        assertFalse(m.isCellRevealed(5, 5));
+    }
+
+    @Test
+    public void testFirstClickSafeBoardIsUnreadableBeforeFirstClick() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.resetFirstClickSafe(Topology.rectangle(16, 30), 99, 4);
+        assertThrows(IllegalStateException.class, () -> m.getCell(0, 0));
+        assertThrows(IllegalStateException.class, () -> m.openings());
+        assertThrows(IllegalStateException.class, () -> m.writeBoard(new StringWriter()));
+        assertFalse(m.isCellRevealed(0, 0));
+
+        m.playTurn(8, 15);
+        assertEquals(0, m.getCell(8, 15));
+        assertTrue(m.openings() > 0);
+        int count = 0;
+        for (int i = 0; i < 16; i++) {
+            for (int j = 0; j < 30; j++) {
+                if (m.getCell(i, j) == -1) {
+                    count++;
+                }
+            }
+        }
+        assertEquals(m.mines(), count);
+    }
+
+    @Test
+    public void testFrontierAfterOpening() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.playTurn(0, 1);
+        assertEquals(1, m.frontierSize());
+        assertTrue(m.isFrontier(0, 1));
+
+        m.playTurn(0, 2);
+        assertEquals(5, m.frontierSize());
+        assertTrue(m.isFrontier(3, 0));
+        assertFalse(m.isFrontier(0, 2));
+    }
+
+    @Test
+    public void testFrontierWithFlags() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.playTurn(0, 2);
+        m.addFlag(0, 0);
+        m.addFlag(1, 0);
+        m.addFlag(2, 0);
+        assertEquals(0, m.frontierSize());
+
+        m.removeFlag(1, 0);
+        assertEquals(3, m.frontierSize());
+        assertTrue(m.isFrontier(1, 1));
+        assertFalse(m.isFrontier(3, 0));
+    }
+
+    @Test
+    public void testFrontierAfterUndo() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.playTurn(0, 1);
+        m.playTurn(0, 2);
+        m.undo();
+        assertEquals(1, m.frontierSize());
+        assertEquals(0, m.frontierColumn(0));
+        assertEquals(1, m.frontierRow(0));
+
+        m.undo();
+        assertEquals(0, m.frontierSize());
+    }
+
+    @Test
+    public void testFrontierMatchesBoard() {
+        Minesweeper m = new Minesweeper(16, 30, 99, 3L);
+        Random random = new Random(3);
+        for (int move = 0; move < 2000; move++) {
+            int c = random.nextInt(16);
+            int r = random.nextInt(30);
+            int action = random.nextInt(4);
+            if (action == 0) {
+                m.addFlag(c, r);
+            } else if (action == 1) {
+                m.removeFlag(c, r);
+            } else if (action == 2 && m.getCell(c, r) != -1) {
+                m.playTurn(c, r);
+            } else {
+                m.undo();
+            }
+
+            int count = 0;
+            for (int i = 0; i < 16; i++) {
+                for (int j = 0; j < 30; j++) {
+                    boolean hidden = false;
+                    for (int x = i - 1; x <= i + 1; x++) {
+                        for (int y = j - 1; y <= j + 1; y++) {
+                            if (x >= 0 && y >= 0 && x < 16 && y < 30 && !m.isCellRevealed(x, y)
+                                    && !m.isFlagged(x, y)) {
+                                hidden = true;
+                            }
+                        }
+                    }
+                    boolean expected = m.isCellRevealed(i, j) && m.getCell(i, j) > 0 && hidden;
+                    assertEquals(expected, m.isFrontier(i, j));
+                    if (expected) {
+                        count++;
+                    }
+                }
+            }
+            assertEquals(count, m.frontierSize());
+            for (int i = 0; i < m.frontierSize(); i++) {
+                assertTrue(m.isFrontier(m.frontierColumn(i), m.frontierRow(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testSparseBackendIsChosenByDensity() {
+        assertTrue(new Minesweeper(1024, 1024, 1000, 1L).isSparse());
+        assertFalse(new Minesweeper(1024, 1024, 20000, 1L).isSparse());
+        assertFalse(new Minesweeper(9, 9, 0, true).isSparse());
+    }
+
+    @Test
+    public void testBoardWithMoreSquaresThanAnIntIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new Minesweeper(50000, 50000, 100, 1L));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new Minesweeper(Topology.torus(65536, 32768), 100, 1L)
+        );
+    }
+
+    @Test
+    public void testSparseBackendMatchesDense() throws Exception {
+        Topology[] topologies = {
+            Topology.rectangle(60, 40), Topology.torus(60, 40), Topology.hex(60, 40)
+        };
+        for (Topology t : topologies) {
+            Minesweeper sparse = new Minesweeper(t, 60, 5L, true);
+            Minesweeper dense = new Minesweeper(t, 60, 5L, false);
+            assertTrue(sparse.isSparse());
+            assertFalse(dense.isSparse());
+            assertEquals(dense.openings(), sparse.openings());
+
+            Random random = new Random(5);
+            for (int move = 0; move < 600; move++) {
+                int c = random.nextInt(60);
+                int r = random.nextInt(40);
+                int action = random.nextInt(4);
+                for (Minesweeper m : new Minesweeper[] { sparse, dense }) {
+                    if (action == 0) {
+                        m.addFlag(c, r);
+                    } else if (action == 1) {
+                        m.removeFlag(c, r);
+                    } else if (action == 2 && m.getCell(c, r) != -1) {
+                        m.playTurn(c, r);
+                    } else {
+                        m.undo();
+                    }
+                }
+                assertEquals(dense.numRevealed(), sparse.numRevealed());
+                assertEquals(dense.getStatus(), sparse.getStatus());
+                assertEquals(dense.frontierSize(), sparse.frontierSize());
+                assertEquals(dense.flags(), sparse.flags());
+            }
+
+            for (int i = 0; i < 60; i++) {
+                for (int j = 0; j < 40; j++) {
+                    assertEquals(dense.getCell(i, j), sparse.getCell(i, j));
+                    assertEquals(dense.isCellRevealed(i, j), sparse.isCellRevealed(i, j));
+                    assertEquals(dense.isFrontier(i, j), sparse.isFrontier(i, j));
+                }
+            }
+            StringWriter a = new StringWriter();
+            StringWriter b = new StringWriter();
+            dense.writeGameState(a);
+            sparse.writeGameState(b);
+            assertEquals(a.toString(), b.toString());
+        }
+    }
+
+    @Test
+    public void testSparseForkIsIndependent() {
+        Minesweeper m = new Minesweeper(Topology.rectangle(100, 100), 0, 2L, true);
+        m.addFlag(10, 10);
+        m.playTurn(50, 50);
+        assertEquals(9999, m.numRevealed());
+
+        Minesweeper f = m.fork();
+        f.removeFlag(10, 10);
+        f.playTurn(10, 10);
+        assertEquals(10000, f.numRevealed());
+        assertTrue(m.isFlagged(10, 10));
+        assertFalse(m.isCellRevealed(10, 10));
+        assertEquals(9999, m.numRevealed());
+
+        m.undo();
+        assertEquals(0, m.numRevealed());
+        assertTrue(f.isCellRevealed(50, 50));
+        assertEquals(10000, f.numRevealed());
+    }
+
+    @Test
+    public void testResultStoreQueries() throws Exception {
+        Path path = Files.createTempFile("results", ".dat");
+        ResultStore store = new ResultStore(path);
+        store.add(9, 9, 10, 12, 1L, 5000, true);
+        store.add(9, 9, 10, 3, 2L, 1000, false);
+        store.add(9, 9, 10, 15, 3L, 4000, true);
+        store.add(16, 16, 40, 30, 4L, 2000, true);
+
+        assertEquals(4, store.size());
+        assertEquals(3, store.games(9, 9, 10));
+        assertEquals(2.0 / 3, store.winRate(9, 9, 10), 1e-9);
+        assertEquals(4000, store.bestTime(9, 9, 10));
+        assertEquals(-1, store.bestTime(16, 30, 99));
+        assertEquals(0, store.games(16, 30, 99));
+        store.close();
+        Files.delete(path);
+    }
+
+    @Test
+    public void testResultStoreReopens() throws Exception {
+        Path path = Files.createTempFile("results", ".dat");
+        ResultStore store = new ResultStore(path);
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.playTurn(0, 2);
+        store.add(m, 7000);
+        store.close();
+
+        store = new ResultStore(path);
+        assertEquals(1, store.size());
+        assertEquals(1.0, store.winRate(9, 9, 3), 1e-9);
+        assertEquals(7000, store.bestTime(9, 9, 3));
+        store.add(9, 9, 3, 1, 0L, 6000, true);
+        assertEquals(6000, store.bestTime(9, 9, 3));
+        store.close();
+        assertEquals(2 * ResultStore.RECORD_SIZE, Files.size(path));
+        Files.delete(path);
+    }
+
+    @Test
+    public void testResultStoresShareAFile() throws Exception {
+        Path path = Files.createTempFile("results", ".dat");
+        ResultStore a = new ResultStore(path);
+        ResultStore b = new ResultStore(path);
+        a.add(9, 9, 10, 12, 1L, 5000, true);
+        b.add(9, 9, 10, 3, 2L, 3000, true);
+        a.add(9, 9, 10, 4, 3L, 1000, false);
+
+        assertEquals(3 * ResultStore.RECORD_SIZE, Files.size(path));
+        assertEquals(3, a.size());
+        assertEquals(3, b.size());
+        assertEquals(3000, a.bestTime(9, 9, 10));
+        assertEquals(2.0 / 3, b.winRate(9, 9, 10), 1e-9);
+        a.close();
+        b.close();
+        Files.delete(path);
+    }
+
+    @Test
+    public void testResultStoreKeepsLargePresetsApart() throws Exception {
+        Path path = Files.createTempFile("results", ".dat");
+        ResultStore store = new ResultStore(path);
+        store.add(4000, 4000, 3000000, 1, 1L, 1000, true);
+        assertEquals(1, store.games(4000, 4000, 3000000));
+        assertEquals(0, store.games(4000, 4001, 902848));
+        store.close();
+        Files.delete(path);
+    }
+
+    @Test
+    public void testReadBoard() throws Exception {
+        Minesweeper m = Minesweeper.readBoard(new StringReader("4 3\n*...\n....\n...*\n"));
+        assertEquals(4, m.width());
+        assertEquals(3, m.height());
+        assertEquals(2, m.mines());
+        assertEquals(-1, m.getCell(0, 0));
+        assertEquals(1, m.getCell(1, 1));
+        assertEquals(1, m.getCell(2, 1));
+        assertEquals(0, m.getCell(3, 0));
+
+        m.playTurn(3, 0);
+        assertEquals(6, m.numRevealed());
+    }
+
+    @Test
+    public void testWriteAndReadBoard() throws Exception {
+        Minesweeper m = new Minesweeper(16, 30, 99, 5L);
+        StringWriter out = new StringWriter();
+        m.writeBoard(out);
+
+        Minesweeper copy = Minesweeper.readBoard(new StringReader(out.toString()));
+        assertEquals(99, copy.mines());
+        assertEquals(m.openings(), copy.openings());
+        for (int i = 0; i < 16; i++) {
+            for (int j = 0; j < 30; j++) {
+                assertEquals(m.getCell(i, j), copy.getCell(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testReadBoardRejectsBadRows() {
+        String[] bad = { "3 2\n...\n..\n", "3 1\n.x.\n", "3\n...\n", "" };
+        for (String text : bad) {
+            assertThrows(IOException.class, () -> Minesweeper.readBoard(new StringReader(text)));
+        }
+    }
+
+    @Test
+    public void testWriteGameState() throws Exception {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.playTurn(0, 1);
+        StringWriter out = new StringWriter();
+        m.writeGameState(out);
+        String[] rows = out.toString().split(System.lineSeparator());
+        assertEquals(9, rows.length);
+        assertEquals("# # # # # # # # # ", rows[0]);
+        assertEquals("2 # # # # # # # # ", rows[1]);
+    }
+
+    @Test
+    public void testForkIsIndependent() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.playTurn(0, 1);
+        m.addFlag(0, 0);
+        Minesweeper f = m.fork();
+        assertTrue(f.isCellRevealed(0, 1));
+        assertTrue(f.isFlagged(0, 0));
+
+        f.playTurn(0, 2);
+        f.removeFlag(0, 0);
+        assertEquals("Won", f.checkWinner());
+        assertEquals(1, m.numRevealed());
+        assertFalse(m.isCellRevealed(0, 2));
+        assertTrue(m.isFlagged(0, 0));
+        assertEquals(1, m.frontierSize());
+
+        m.playTurn(1, 0);
+        assertEquals("Lost", m.checkWinner());
+        assertFalse(f.isCellRevealed(1, 0));
+        assertEquals("Won", f.checkWinner());
+    }
+
+    @Test
+    public void testClickingRevealedZeroIsNotAMove() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        assertEquals(0, m.getCell(8, 8));
+        assertTrue(m.playTurn(8, 8));
+        assertFalse(m.playTurn(8, 8));
+        assertFalse(m.playTurn(7, 7));
+        assertEquals(1, m.moves());
+
+        m.undo();
+        assertEquals(0, m.numRevealed());
+        assertEquals(0, m.moves());
+    }
+
+    @Test
+    public void testForkUndoesSharedMoves() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.playTurn(0, 1);
+        m.playTurn(3, 0);
+        Minesweeper f = m.fork();
+        f.undo();
+        f.undo();
+        f.playTurn(1, 1);
+        assertEquals(1, f.numRevealed());
+        assertEquals(1, f.moves());
+
+        m.undo();
+        assertTrue(m.isCellRevealed(0, 1));
+        assertFalse(m.isCellRevealed(3, 0));
+        assertFalse(m.isCellRevealed(1, 1));
+        assertEquals(1, m.moves());
+    }
+
+    @Test
+    public void testForkOfForkWithLongHistory() {
+        Minesweeper m = new Minesweeper(60, 60, 0, true);
+        m.addFlag(30, 30);
+        m.playTurn(0, 0);
+        Minesweeper f = m.fork();
+        Minesweeper g = f.fork();
+        g.removeFlag(30, 30);
+        g.playTurn(30, 30);
+        assertEquals(3600, g.numRevealed());
+
+        f.undo();
+        assertEquals(0, f.numRevealed());
+        assertEquals(3599, m.numRevealed());
+        g.undo();
+        assertEquals(3599, g.numRevealed());
+        g.undo();
+        assertEquals(0, g.numRevealed());
+        assertEquals(3599, m.numRevealed());
+    }
+
+    @Test
+    public void testForkBeforeFirstClick() {
+        Minesweeper m = new Minesweeper(9, 9, 3, true);
+        m.resetFirstClickSafe(Topology.rectangle(16, 30), 99, 11);
+        Minesweeper f = m.fork();
+        f.playTurn(5, 5);
+        m.playTurn(10, 20);
+        assertEquals(0, f.getCell(5, 5));
+        assertEquals(0, m.getCell(10, 20));
+        assertFalse(m.isCellRevealed(5, 5));
+        assertFalse(f.isCellRevealed(10, 20));
+    }
+
+    @Test
+    public void testSimulationPlaysGamesAndPublishesFrames() throws InterruptedException {
+        Simulation sim = new Simulation(9, 9, 10, 2, 0);
+        assertNull(sim.latestFrame());
+        sim.start();
+        Minesweeper frame = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((frame == null || sim.games() == 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            frame = sim.latestFrame();
+        }
+        sim.stop();
+
+        assertNotNull(frame);
+        assertTrue(sim.games() > 0);
+        assertTrue(sim.wins() <= sim.games());
+        assertEquals(9, frame.width());
+        assertTrue(frame.moves() > 0);
+
+        // the snapshot is not changed by the games played after it
+        int revealed = frame.numRevealed();
+        sim.start();
+        Thread.sleep(50);
+        sim.stop();
+        assertEquals(revealed, frame.numRevealed());
+    }
 }
@@ -0,0 +1,186 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Regression tests for the performance guarantees of the Minesweeper model.
+ * Playing, flagging and undoing must not allocate once a game is underway,
+ * revealing must work on boards far larger than the GUI offers, an opening
+ * on a sparse board must cost time and memory for its runs only, and
+ * checkWinner must not get slower as the board grows. GameTest covers
+ * correctness; these tests fail as soon as a change breaks one of the budgets.
+ */
+public class PerformanceTest {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * allocated returns how many bytes the current thread has allocated so far.
+     */
+    private static long allocated() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * play runs a few rounds of the moves a player makes during a game: a
+     * numbered square, an opening, undoing both, and toggling a flag.
+     */
+    private static void play(Minesweeper m, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            m.playTurn(0, 1);
+            m.playTurn(5, 5);
+            m.checkWinner();
+            m.undo();
+            m.undo();
+            m.addFlag(4, 4);
+            m.isFlagged(4, 4);
+            m.removeFlag(4, 4);
+        }
+    }
+
+    @Test
+    public void testSteadyStateMovesDoNotAllocate() {
+        Minesweeper m = new Minesweeper(30, 16, 30, true);
+        // the first rounds size the undo stacks and let the JIT settle
+        play(m, 20000);
+
+        long overhead = allocated();
+        overhead = allocated() - overhead;
+
+        long before = allocated();
+        play(m, 1000);
+        long used = allocated() - before - overhead;
+
+        assertEquals(0, used, "bytes allocated by playTurn, undo and flags");
+    }
+
+    @Test
+    public void testHugeOpeningDoesNotOverflow() {
+        Minesweeper m = new Minesweeper(4000, 4000, 0, true);
+        m.playTurn(0, 0);
+        assertEquals(4000 * 4000, m.numRevealed());
+        assertEquals("Won", m.checkWinner());
+
+        m.undo();
+        assertEquals(0, m.numRevealed());
+    }
+
+    @Test
+    public void testHugeFloodFillAroundFlagDoesNotOverflow() {
+        Minesweeper m = new Minesweeper(4000, 4000, 0, true);
+        m.addFlag(2000, 2000);
+        m.playTurn(0, 0);
+        assertEquals(4000 * 4000 - 1, m.numRevealed());
+        assertFalse(m.isCellRevealed(2000, 2000));
+    }
+
+    @Test
+    public void testHugeSparseBoardTakesMemoryForMinesOnly() {
+        long before = allocated();
+        Minesweeper m = new Minesweeper(30000, 30000, 1000, 1L);
+        long used = allocated() - before;
+        assertTrue(m.isSparse());
+
+        // the dense grids of 900 million squares would take gigabytes
+        assertTrue(used < 10000000, "a sparse board allocated " + used + " bytes");
+
+        // a zero somewhere away from the mines opens almost the whole board
+        Random random = new Random(1);
+        int c;
+        int r;
+        do {
+            c = random.nextInt(30000);
+            r = random.nextInt(30000);
+        } while (m.getCell(c, r) != 0);
+        before = allocated();
+        long start = System.nanoTime();
+        assertTrue(m.playTurn(c, r));
+        long millis = (System.nanoTime() - start) / 1000000;
+        used = allocated() - before;
+        assertEquals(30000 * 30000 - 1000, m.numRevealed());
+        assertEquals("Won", m.checkWinner());
+
+        // an int of undo history per square alone would be 3.6 gigabytes
+        assertTrue(used < 10000000, "opening the board allocated " + used + " bytes");
+        assertTrue(millis < 5000, "opening the board took " + millis + " ms");
+
+        m.undo();
+        assertEquals(0, m.numRevealed());
+        assertEquals(0, m.frontierSize());
+        assertEquals("Still Playing", m.checkWinner());
+    }
+
+    @Test
+    public void testCheckWinnerCostDoesNotGrowWithBoard() {
+        Minesweeper small = new Minesweeper(10, 10, 10, true);
+        Minesweeper large = new Minesweeper(2000, 2000, 10, true);
+        small.playTurn(5, 5);
+        large.playTurn(5, 5);
+
+        timeCheckWinner(small, 100000);
+        timeCheckWinner(large, 100000);
+        long smallNanos = timeCheckWinner(small, 100000);
+        long largeNanos = timeCheckWinner(large, 100000);
+
+        // a scan of the large board would be 40000 times slower than the small one
+        assertTrue(
+                largeNanos < 10 * smallNanos + 50000000L,
+                "checkWinner took " + largeNanos + " ns on 2000x2000 vs " + smallNanos
+                        + " ns on 10x10"
+        );
+    }
+
+    private static long timeCheckWinner(Minesweeper m, int calls) {
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            m.checkWinner();
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void testFirstClickSafeAllocatesLikeEagerGeneration() {
+        // dense enough that the first opening is small next to the board
+        Topology t = Topology.rectangle(1000, 1000);
+        Minesweeper m = new Minesweeper(t, 200000, 1L);
+        m.resetFirstClickSafe(t, 200000, 1L);
+        m.playTurn(500, 500);
+
+        long before = allocated();
+        m.reset(t, 200000, 2L);
+        long eager = allocated() - before;
+
+        before = allocated();
+        m.resetFirstClickSafe(t, 200000, 2L);
+        m.playTurn(500, 500);
+        long deferred = allocated() - before;
+
+        // the board alone is a megabyte, so a second one would show
+        assertTrue(
+                deferred < eager + 500000,
+                "first-click-safe game allocated " + deferred + " bytes, eager " + eager
+        );
+    }
+
+    @Test
+    public void testForkCostDoesNotGrowWithBoard() {
+        Minesweeper m = new Minesweeper(2000, 2000, 4000, 1L);
+        m.playTurn(1000, 1000);
+        m.fork();
+
+        long before = allocated();
+        Minesweeper f = m.fork();
+        long forked = allocated() - before;
+
+        before = allocated();
+        f.addFlag(0, 0);
+        f.removeFlag(0, 0);
+        long changed = allocated() - before;
+
+        // a deep copy of the per-square state would take tens of megabytes
+        assertTrue(forked < 1000, "fork allocated " + forked + " bytes");
+        assertTrue(changed < 200000, "first change after fork allocated " + changed + " bytes");
+    }
+}